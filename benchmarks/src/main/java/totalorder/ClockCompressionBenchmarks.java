@@ -0,0 +1,99 @@
+package totalorder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//causal broadcasts of randomly picked active senders, delivered to every process in send order with differential clocks,
+//each frame encoded for it's channel, decoded against the receiver's state of the channel and merged
+//the counters report the bytes of the frames with full and with differential clocks, so fullBytes/frames and differentialBytes/frames
+//are the bytes per message of each, and their ratio the saving as the num of processes grows
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClockCompressionBenchmarks {
+
+    @Param({"4", "16", "64", "256"})
+    int numProcesses;
+
+    @Param({"4", "all"})
+    String senders; //num of processes broadcasting, the others only receiving
+
+    int activeSenders;
+    Random random;
+    VectorClock[] clocks;
+    ByteBuffer buffer;
+    int mid;
+
+    @Setup
+    public void setup() {
+        this.activeSenders = "all".equals(this.senders) ? this.numProcesses : Math.min(this.numProcesses, Integer.parseInt(this.senders));
+        this.random = new Random(this.numProcesses * 31L + this.activeSenders);
+        this.clocks = new VectorClock[this.numProcesses];
+        for (int i = 0; i < this.numProcesses; i++) {
+            this.clocks[i] = new VectorClock(this.numProcesses, i);
+            this.clocks[i].enableDifferentialTransmission();
+        }
+        this.buffer = ByteBuffer.allocate(MessageCodec.maximumEncodedSize(new Message("APPLICATION", 0, 0, new int[this.numProcesses], Integer.MAX_VALUE)));
+    }
+
+    //bytes of the frames encoded in an iteration, with each kind of clock
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class FrameBytes {
+        public long frames;
+        public long fullBytes;
+        public long differentialBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.frames = 0;
+            this.fullBytes = 0;
+            this.differentialBytes = 0;
+        }
+    }
+
+    //one broadcast, sent to and merged by every other process
+    @Benchmark
+    public VectorClock broadcast(FrameBytes frameBytes) {
+        int sender = this.random.nextInt(this.activeSenders);
+        Message message = new Message("APPLICATION", sender, sender, this.clocks[sender].tick(new int[this.numProcesses]), ++this.mid);
+
+        for (int receiver = 0; receiver < this.numProcesses; receiver++) {
+            if(receiver == sender) { continue; }
+
+            this.buffer.clear();
+            MessageCodec.encode(message, this.buffer, this.clocks[sender].getLastSentClock(receiver));
+            this.buffer.flip();
+            frameBytes.frames++;
+            frameBytes.fullBytes += MessageCodec.encodedSize(message);
+            frameBytes.differentialBytes += this.buffer.remaining();
+
+            //the receiver rebuilds the full clock from it's state of the channel before merging it
+            Message received = MessageCodec.decode(this.buffer, null, this.clocks[receiver].getLastReceivedClocks());
+            if(!Arrays.equals(received.clock, message.clock)) {
+                throw new IllegalStateException("differential clock rebuilt wrongly at process " + receiver);
+            }
+            this.clocks[receiver].mergeClock(received.clock);
+        }
+        return this.clocks[sender];
+    }
+}
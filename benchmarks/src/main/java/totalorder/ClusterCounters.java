@@ -0,0 +1,59 @@
+package totalorder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+//secondary results of the benchmarks running whole clusters, next to their runs per second
+public class ClusterCounters {
+
+    //requests delivered by every process, reported per second
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Requests {
+        public long requests;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.requests = 0;
+        }
+    }
+
+    //request-to-delivery latency percentiles of every delivery of an iteration's runs, in microseconds, averaged over the measured iterations
+    //JMH sums event counters over the iterations and forks, so each iteration reports it's percentiles divided by their num
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Latency {
+        LatencyHistogram histogram;
+        double share;   //1 over the num of measured iterations of all forks
+
+        @Setup(Level.Trial)
+        public void measure(BenchmarkParams params) {
+            this.share = 1.0 / (params.getMeasurement().getCount() * Math.max(1, params.getForks()));
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.histogram = new LatencyHistogram();
+        }
+
+        public double p50Micros() {
+            return this.percentile(0.50);
+        }
+
+        public double p99Micros() {
+            return this.percentile(0.99);
+        }
+
+        public double p999Micros() {
+            return this.percentile(0.999);
+        }
+
+        private double percentile(double quantile) {
+            return this.histogram.getValueAtQuantile(quantile) / 1000.0 * this.share;
+        }
+    }
+}
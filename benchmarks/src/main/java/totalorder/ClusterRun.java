@@ -0,0 +1,77 @@
+package totalorder;
+
+import java.util.List;
+
+//one run of a cluster of processes on loopback ports inside this JVM, for the benchmarks timing whole runs
+//every run takes the next numProcesses ports from -DbasePort on, so a run never waits for the ports of the one before it
+final class ClusterRun {
+
+    private static final long TIMEOUT_MILLIS = 120000;  //longest a run may take to deliver every message
+
+    private static int nextPort = Integer.getInteger("basePort", 5000);
+
+    private ClusterRun() {
+    }
+
+    //run a cluster until every process delivered every message, returning the num of deliveries of all processes
+    //throws if a process didn't deliver every message, or in sequencer mode if the processes disagree on an order they must share
+    static int run(int numProcesses, ProcessConfig config) throws InterruptedException {
+        return run(numProcesses, config, null);
+    }
+
+    //run a cluster, recording the request-to-delivery latency of every delivery of every process in latency (null to not record them)
+    static int run(int numProcesses, ProcessConfig config, LatencyHistogram latency) throws InterruptedException {
+        int basePort;
+        synchronized(ClusterRun.class) {
+            basePort = nextPort;
+            nextPort += numProcesses;
+        }
+        config.orderHistory = true;
+
+        LocalCluster cluster = new LocalCluster(numProcesses, basePort, config);
+        try {
+            if(!cluster.awaitDelivery(TIMEOUT_MILLIS)) {
+                throw new IllegalStateException("cluster on ports " + basePort + "+ didn't deliver every message within " + TIMEOUT_MILLIS + " ms");
+            }
+            Process[] processes = cluster.getProcesses();
+
+            int delivered = 0;
+            for (Process process : processes) {
+                delivered += process.getMessagesOrder().size();
+                if(latency != null) {
+                    for (long nanos : process.getLatencies()) {
+                        latency.record(nanos);
+                    }
+                }
+            }
+            if(!config.causalMode) {
+                if(config.sequencers == 1 && !sameOrder(processes)) { throw new IllegalStateException("processes delivered in different orders"); }
+                if(!sameGroupOrder(processes, config.groups)) { throw new IllegalStateException("processes delivered a group in different orders"); }
+            }
+            return delivered;
+        }
+        finally {
+            cluster.shutdown();
+        }
+    }
+
+    //check that every process delivered every message in the same order
+    private static boolean sameOrder(Process[] processes) {
+        List<Integer> firstOrder = processes[0].getMessagesOrder();
+        for (Process process : processes) {
+            if(!process.getMessagesOrder().equals(firstOrder)) { return false; }
+        }
+        return true;
+    }
+
+    //check that every process delivered the messages of each group in the same order
+    private static boolean sameGroupOrder(Process[] processes, int groups) {
+        for (int g = 0; g < groups; g++) {
+            List<Integer> firstOrder = processes[0].getGroupOrder(g);
+            for (Process process : processes) {
+                if(!process.getGroupOrder(g).equals(firstOrder)) { return false; }
+            }
+        }
+        return true;
+    }
+}
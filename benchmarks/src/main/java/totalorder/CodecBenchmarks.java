@@ -0,0 +1,147 @@
+package totalorder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//MessageCodec encoding and decoding of APPLICATION broadcasts, single or batched,
+//and a round trip through the codec against one through java serialization, which the codec replaced
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmarks {
+
+    @Param({"4", "64"})
+    int numProcesses;
+
+    @Param({"1", "16"})
+    int batchSize;
+
+    Message message;
+    ByteBuffer buffer;
+    ByteBuffer encoded;
+    Message reuse;
+    SerializableMessage serializable;
+
+    @Setup
+    public void setup() {
+        Message[] batch = new Message[this.batchSize];
+        for (int i = 0; i < this.batchSize; i++) {
+            int[] clock = new int[this.numProcesses];
+            for (int p = 0; p < this.numProcesses; p++) {
+                clock[p] = 1000 + 37 * p + i;
+            }
+            batch[i] = new Message("REQ_MASTER", i % this.numProcesses, 0, clock, 100 * this.numProcesses + i);
+            batch[i].group = i % 16;
+            batch[i].timestamp = System.nanoTime();
+        }
+
+        this.message = new Message("APPLICATION", 0, batch[0].senderProcessId, batch[0].clock, batch[0].mid);
+        this.message.seq = 123456;
+        this.message.timestamp = batch[0].timestamp;
+        if(this.batchSize > 1) { this.message.batch = batch; }
+
+        this.buffer = ByteBuffer.allocate(MessageCodec.encodedSize(this.message));
+        this.encoded = ByteBuffer.wrap(MessageCodec.encode(this.message));
+        this.reuse = new Message(null, 0, 0, new int[this.numProcesses], 0);
+        this.serializable = new SerializableMessage(this.message);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeIntoBuffer() {
+        this.buffer.clear();
+        MessageCodec.encode(this.message, this.buffer);
+        return this.buffer;
+    }
+
+    @Benchmark
+    public byte[] encodeToArray() {
+        return MessageCodec.encode(this.message);
+    }
+
+    @Benchmark
+    public Message decode() {
+        this.encoded.rewind();
+        return MessageCodec.decode(this.encoded, null);
+    }
+
+    @Benchmark
+    public Message decodeReusingMessage() {
+        this.encoded.rewind();
+        return MessageCodec.decode(this.encoded, this.reuse);
+    }
+
+    //encode and decode as a frame goes from one process to another
+    @Benchmark
+    public Message roundTrip() {
+        this.buffer.clear();
+        MessageCodec.encode(this.message, this.buffer);
+        this.buffer.flip();
+        return MessageCodec.decode(this.buffer, this.reuse);
+    }
+
+    //the same round trip through java serialization, one object stream per frame as sent before the codec
+    @Benchmark
+    public Object roundTripSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(this.serializable);
+        output.flush();
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    //the fields of a Message as java serialization wrote them when Message was Serializable, which only this comparison still needs
+    static class SerializableMessage implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        String type;
+        int senderProcessId;
+        int receiverProcessId;
+        int[] clock;
+        int mid;
+        int seq;
+        int group;
+        int stable;
+        SerializableMessage[] batch;
+        long timestamp;
+
+        SerializableMessage(Message message) {
+            this.type = message.type;
+            this.senderProcessId = message.senderProcessId;
+            this.receiverProcessId = message.receiverProcessId;
+            this.clock = message.clock;
+            this.mid = message.mid;
+            this.seq = message.seq;
+            this.group = message.group;
+            this.stable = message.stable;
+            this.timestamp = message.timestamp;
+            if(message.batch != null) {
+                this.batch = new SerializableMessage[message.batch.length];
+                for (int i = 0; i < message.batch.length; i++) {
+                    this.batch[i] = new SerializableMessage(message.batch[i]);
+                }
+            }
+        }
+    }
+}
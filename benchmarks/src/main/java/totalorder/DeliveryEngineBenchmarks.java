@@ -0,0 +1,93 @@
+package totalorder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//the hold-back path of a receiver: offering a backlog of broadcasts arriving out of order, and delivering all of them
+//in sequence order as they become deliverable (DeliveryEngine replaced the list scans of canDeliverMessage/getDeliverableBufferMessage)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(DeliveryEngineBenchmarks.BACKLOG)
+public class DeliveryEngineBenchmarks {
+
+    static final int BACKLOG = 10000;   //num of broadcasts per invocation, reported per broadcast
+
+    //reversed: every broadcast is held back until the last one offered, shuffled: random arrival within the backlog
+    @Param({"reversed", "shuffled"})
+    String arrival;
+
+    @Param({"4", "64"})
+    int numSenders;
+
+    Message[] messages;
+    long[] sequences;
+    int[] senders;
+    DeliveryEngine engine;
+
+    @Setup
+    public void setup() {
+        this.messages = new Message[BACKLOG];
+        this.sequences = new long[BACKLOG];
+        this.senders = new int[BACKLOG];
+        for (int i = 0; i < BACKLOG; i++) {
+            this.messages[i] = new Message("APPLICATION", 0, 0, null, i);
+        }
+
+        //the order in which the broadcasts of the backlog arrive, as offsets from it's first sequence number
+        int[] order = new int[BACKLOG];
+        for (int i = 0; i < BACKLOG; i++) {
+            order[i] = "reversed".equals(this.arrival) ? BACKLOG - 1 - i : i;
+        }
+        if("shuffled".equals(this.arrival)) {
+            Random random = new Random(42);
+            for (int i = BACKLOG - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+        }
+        //every sender has it's own stream, each offset going to sender offset % numSenders with the offset / numSenders-th sequence number
+        for (int i = 0; i < BACKLOG; i++) {
+            this.senders[i] = order[i] % this.numSenders;
+            this.sequences[i] = order[i] / this.numSenders;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void newEngine() {
+        this.engine = new DeliveryEngine(this.numSenders, 64);
+    }
+
+    @Benchmark
+    public int offerAndDeliverBacklog() {
+        int delivered = 0;
+        for (int i = 0; i < BACKLOG; i++) {
+            int sender = this.senders[i];
+            if(this.engine.offer(sender, this.sequences[i] + 1, this.messages[i]) == DeliveryEngine.DELIVERABLE) {
+                while(this.engine.poll(sender) != null) {
+                    delivered++;
+                }
+            }
+        }
+        return delivered;
+    }
+}
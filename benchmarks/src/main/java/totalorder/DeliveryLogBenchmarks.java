@@ -0,0 +1,155 @@
+package totalorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//appending sequenced deliveries of a 4-process cluster to the delivery log with each sync policy, committing once per
+//delivering step of COMMIT_EVERY deliveries as a process does, behind a log already holding millions of records or none,
+//and the time of reading a whole log of up to millions of records back on opening it
+//each iteration appends to a fresh log in the temporary directory, deleted after it
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeliveryLogBenchmarks {
+
+    static final int NUM_PROCESSES = 4;
+    static final int COMMIT_EVERY = 16; //num of deliveries appended per invocation, reported per delivery
+
+    //a fresh log for each iteration, synced with the policy under test
+    @State(Scope.Thread)
+    public static class Appending {
+        @Param({"none", "interval", "always"})
+        String sync;
+
+        @Param({"0", "1000000"})
+        int logged; //num of records already in the log, spread over segments, before the appends measured
+
+        ScheduledExecutorService timer;
+        File directory;
+        DeliveryLog log;
+        VectorClock clock;
+        int seq;
+
+        @Setup(Level.Trial)
+        public void startTimer() {
+            this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        @Setup(Level.Iteration)
+        public void open() throws IOException {
+            this.directory = Files.createTempDirectory("delivery-log-benchmark").toFile();
+            this.log = new DeliveryLog(this.directory, 64 << 20, DeliveryLog.syncPolicy(this.sync), (stream, seq, message) -> {});
+            this.clock = new VectorClock(NUM_PROCESSES, 0);
+            for (int seq = 1; seq <= this.logged; seq++) {
+                this.log.append(0, seq, delivery(this.clock, seq));
+            }
+            this.seq = this.logged;
+            this.log.sync();
+            this.log.startSyncing(10, this.timer);
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() {
+            this.log.close();
+            delete(this.directory);
+        }
+
+        @TearDown(Level.Trial)
+        public void stopTimer() {
+            this.timer.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMIT_EVERY)
+    public DeliveryLog append(Appending appending) throws IOException {
+        for (int i = 0; i < COMMIT_EVERY; i++) {
+            appending.seq++;
+            appending.log.append(0, appending.seq, delivery(appending.clock, appending.seq));
+        }
+        appending.log.commit();
+        return appending.log;
+    }
+
+    //a log of records records, written once and read back by every invocation
+    @State(Scope.Benchmark)
+    public static class Written {
+        @Param({"200000", "1000000", "4000000"})
+        int records;
+
+        File directory;
+
+        @Setup(Level.Trial)
+        public void write() throws IOException {
+            this.directory = Files.createTempDirectory("delivery-log-replay").toFile();
+            DeliveryLog log = new DeliveryLog(this.directory, 64 << 20, DeliveryLog.NONE, (stream, seq, message) -> {});
+            VectorClock clock = new VectorClock(NUM_PROCESSES, 0);
+            for (int seq = 1; seq <= this.records; seq++) {
+                log.append(0, seq, delivery(clock, seq));
+            }
+            log.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() {
+            DeliveryLogBenchmarks.delete(this.directory);
+        }
+    }
+
+    //read every record back, merging each clock as a process reading it's history would
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long replay(Written written) throws IOException {
+        VectorClock restored = new VectorClock(NUM_PROCESSES, 1);
+        DeliveryLog replayed = new DeliveryLog(written.directory, 64 << 20, DeliveryLog.NONE, (stream, seq, message) -> restored.updateClock(message));
+        long records = replayed.getRecords();
+        replayed.close();
+        if(records != written.records) { throw new IllegalStateException("replayed " + records + " of " + written.records + " records"); }
+        return records;
+    }
+
+    //the seq-th delivery of a request, requested by the processes in turn
+    static Message delivery(VectorClock clock, int seq) {
+        int sender = seq % NUM_PROCESSES;
+        Message message = new Message("REQ_MASTER", sender, 0, clock.tick(new int[NUM_PROCESSES]), seq * NUM_PROCESSES + sender);
+        message.group = seq % 16;
+        message.timestamp = seq;
+        return message;
+    }
+
+    static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
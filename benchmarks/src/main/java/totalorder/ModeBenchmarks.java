@@ -0,0 +1,53 @@
+package totalorder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//whole runs of a cluster in the leader's sequencer mode against leaderless causal mode, until every process delivered every message,
+//without the emulated network delay and with every process requesting at rate (requests/s, the default saturating it)
+//reports runs/s, requests delivered per second (requests) and the request-to-delivery latency percentiles (p50Micros, p99Micros, p999Micros)
+//a sequencer mode run checks that every process delivered every message in the same order
+//the other settings are read from system properties as by a process (Eg: -jvmArgs -DbatchSize=8)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ModeBenchmarks {
+
+    @Param({"4"})
+    int numProcesses;
+
+    @Param({"sequencer", "causal"})
+    String mode;
+
+    @Param({"2000"})
+    int messages;   //requests made by each process in a run
+
+    @Param({"1000000"})
+    int rate;
+
+    @Benchmark
+    public int run(ClusterCounters.Requests requests, ClusterCounters.Latency latency) throws InterruptedException {
+        ProcessConfig config = new ProcessConfig();
+        config.causalMode = "causal".equals(this.mode);
+        config.messages = this.messages;
+        config.rate = this.rate;
+        config.rates = null;
+        config.networkDelay = false;
+        int delivered = ClusterRun.run(this.numProcesses, config, latency.histogram);
+        requests.requests += (long) this.numProcesses * this.messages;
+        return delivered;
+    }
+}
@@ -0,0 +1,126 @@
+package totalorder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//the sequencer pipeline of Process without sockets, on it's own Sequencer and SequencedReceiver: the leader queues requests,
+//takes them in the order of the sequencing policy into broadcasts of up to batchSize, encodes each once and tracks it's acknowledgements,
+//while every receiver decodes the frames, holds back the ones arriving early, delivers in sequence order and acknowledges cumulatively
+//frames of a window reach receivers in reverse order, so every broadcast but the first of a window is held back
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(SequencerLoopBenchmarks.REQUESTS)
+public class SequencerLoopBenchmarks {
+
+    static final int REQUESTS = 256;    //num of requests sequenced per invocation, reported per request
+
+    @Param({"4", "16"})
+    int numProcesses;
+
+    @Param({"1", "16"})
+    int windowSize;
+
+    @Param({"1", "8"})
+    int batchSize;
+
+    @Param({"round-robin"})
+    String sequencing;
+
+    Message[] requests;
+
+    //leader
+    VectorClock leaderClock;
+    Sequencer sequencer;
+    byte[][] window;    //frames of the outstanding broadcasts, in sequence order
+
+    //receivers, indexed by process ID (0 being the leader)
+    VectorClock[] clocks;
+    SequencedReceiver[] receivers;
+
+    @Setup
+    public void setup() {
+        this.requests = new Message[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            int sender = 1 + i % (this.numProcesses - 1);
+            int[] clock = new int[this.numProcesses];
+            clock[sender] = 1 + i / (this.numProcesses - 1);
+            this.requests[i] = new Message("REQ_MASTER", sender, 0, clock, i * this.numProcesses + sender);
+            this.requests[i].group = i % 16;
+        }
+
+        this.leaderClock = new VectorClock(this.numProcesses, 0);
+        this.sequencer = new Sequencer(0, this.numProcesses, REQUESTS, this.windowSize,
+            SequencingPolicy.of(this.sequencing, SequencingPolicy.weights(null, this.numProcesses)), null);
+        this.window = new byte[this.windowSize][];
+
+        this.clocks = new VectorClock[this.numProcesses];
+        this.receivers = new SequencedReceiver[this.numProcesses];
+        for (int p = 1; p < this.numProcesses; p++) {
+            this.clocks[p] = new VectorClock(this.numProcesses, p);
+            this.receivers[p] = new SequencedReceiver(new DeliveryEngine(this.numProcesses, 64), this.numProcesses, 1);
+        }
+    }
+
+    @Benchmark
+    public int sequenceDeliverAcknowledge() {
+        int served = 0;
+        int outstanding = 0;
+        int next = 0;
+        while(next < REQUESTS || this.sequencer.getQueued() > 0) {
+            //leader: requests arrive until a batch is ready, then it's taken in policy order and broadcast
+            while(next < REQUESTS && this.sequencer.getQueued() < this.batchSize) {
+                this.sequencer.queue(this.requests[next++]);
+            }
+            Message[] batch = new Message[Math.min(this.batchSize, this.sequencer.getQueued())];
+            int size = this.sequencer.take(batch);
+            for (int i = 0; i < size; i++) {
+                this.leaderClock.updateClock(batch[i]);
+            }
+            this.window[outstanding++] = MessageCodec.encode(this.sequencer.broadcast(batch, size));
+
+            if(this.sequencer.isWindowOpen() && (next < REQUESTS || this.sequencer.getQueued() > 0)) { continue; }
+
+            //receivers: the window arrives in reverse order, then each receiver acknowledges everything it delivered
+            for (int p = 1; p < this.numProcesses; p++) {
+                for (int f = outstanding - 1; f >= 0; f--) {
+                    served += this.receive(p, MessageCodec.decode(ByteBuffer.wrap(this.window[f]), null));
+                }
+            }
+            outstanding = 0;
+        }
+        return served;
+    }
+
+    //receiver p takes a broadcast, delivers what became deliverable, and acknowledges it to the leader once due
+    //returns the num of requests the acknowledgement completed at the leader
+    private int receive(int p, Message broadcast) {
+        SequencedReceiver receiver = this.receivers[p];
+        if(receiver.offer(broadcast) != DeliveryEngine.DELIVERABLE) { return 0; }
+
+        Message deliverable;
+        while((deliverable = receiver.poll(0)) != null) {
+            for (Message entry : deliverable.getEntries()) {
+                this.clocks[p].updateClock(entry);
+            }
+        }
+        if(!receiver.isAcknowledgementDue(0)) { return 0; }
+        return this.sequencer.acknowledge(p, receiver.takeAcknowledgement(0));
+    }
+}
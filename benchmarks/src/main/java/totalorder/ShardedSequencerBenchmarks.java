@@ -0,0 +1,54 @@
+package totalorder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//whole sequencer mode runs of a cluster, until every process delivered every message, as the num of sequencers sharing the groups grows,
+//without the emulated network delay and with every process requesting at rate (requests/s, the default saturating it)
+//reports runs/s and requests delivered per second (requests), the throughput the sequencers scale
+//each run checks that every process delivered each group in the same order (and every message in the same order with a single sequencer)
+//the other settings are read from system properties as by a process (Eg: -jvmArgs -DbatchSize=8)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ShardedSequencerBenchmarks {
+
+    @Param({"4"})
+    int numProcesses;
+
+    @Param({"1", "2", "4"})
+    int sequencers;
+
+    @Param({"2000"})
+    int messages;   //requests made by each process in a run
+
+    @Param({"1000000"})
+    int rate;
+
+    @Benchmark
+    public int run(ClusterCounters.Requests requests) throws InterruptedException {
+        ProcessConfig config = new ProcessConfig();
+        config.causalMode = false;
+        config.sequencers = Math.min(this.sequencers, this.numProcesses);
+        config.messages = this.messages;
+        config.rate = this.rate;
+        config.rates = null;
+        config.networkDelay = false;
+        int delivered = ClusterRun.run(this.numProcesses, config);
+        requests.requests += (long) this.numProcesses * this.messages;
+        return delivered;
+    }
+}
@@ -0,0 +1,165 @@
+package totalorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+//VectorClock.updateClock and getVectorClock on one clock shared by every benchmark thread,
+//as the receiving and sending threads of a process share it's clock, and the operations done per message (a local event copied
+//into the outgoing timestamp, and a delivery merging a received one) against the lock-based clock VectorClock replaced
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorClockBenchmarks {
+
+    @Param({"4", "16", "64"})
+    int numProcesses;
+
+    VectorClock clock;
+    LockingVectorClock lockingClock;
+
+    @Setup
+    public void setup() {
+        this.clock = new VectorClock(this.numProcesses, 0);
+        this.lockingClock = new LockingVectorClock(this.numProcesses, 0);
+    }
+
+    //timestamps received by a single thread, advancing one entry per delivery
+    @State(Scope.Thread)
+    public static class Incoming {
+        Message message;
+        int[] outgoing;
+        int next;
+
+        @Setup
+        public void setup(VectorClockBenchmarks benchmark) {
+            this.message = new Message("APPLICATION", 1, 0, new int[benchmark.numProcesses], 0);
+            this.outgoing = new int[benchmark.numProcesses];
+        }
+
+        Message advance() {
+            this.next++;
+            this.message.clock[this.next % this.message.clock.length] = this.next;
+            return this.message;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public VectorClock updateClockUncontended(Incoming incoming) {
+        this.clock.updateClock(incoming.advance());
+        return this.clock;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public VectorClock updateClockContended(Incoming incoming) {
+        this.clock.updateClock(incoming.advance());
+        return this.clock;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int[] getVectorClockContended() {
+        return this.clock.getVectorClock();
+    }
+
+    //deliveries merging timestamps while senders copy the clock into their outgoing timestamps
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public VectorClock mixedUpdateClock(Incoming incoming) {
+        this.clock.updateClock(incoming.advance());
+        return this.clock;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public int[] mixedTick(Incoming incoming) {
+        return this.clock.tick(incoming.outgoing);
+    }
+
+    //tick + copy + merge through the lock-free clock, copying into a reused array
+    @Benchmark
+    @Threads(4)
+    public int[] tickAndMerge(Incoming incoming) {
+        this.clock.tick(incoming.outgoing);
+        this.clock.updateClock(incoming.advance());
+        return incoming.outgoing;
+    }
+
+    //tick + copy + merge through the lock-based clock, allocating a copy per message
+    @Benchmark
+    @Threads(4)
+    public int[] tickAndMergeLocking(Incoming incoming) {
+        this.lockingClock.updateLocalClock(0);
+        int[] outgoing = this.lockingClock.getVectorClock();
+        this.lockingClock.updateClock(incoming.advance());
+        return outgoing;
+    }
+
+    //the VectorClock as it was before it became lock-free, kept as the baseline to compare against
+    static class LockingVectorClock {
+        int processId;
+        int clockIncrement = 1;
+        int clock[];
+        private final ReadWriteLock timeStampLock = new ReentrantReadWriteLock();
+
+        LockingVectorClock(int size, int processId) {
+            this.clock = new int[size];
+            this.processId = processId;
+        }
+
+        int[] getVectorClock() {
+            this.timeStampLock.readLock().lock();
+            try {
+                return this.clock.clone();
+            }
+            finally {
+                this.timeStampLock.readLock().unlock();
+            }
+        }
+
+        synchronized void updateLocalClock(int processId) {
+            this.timeStampLock.writeLock().lock();
+            try {
+                this.clock[processId] += this.clockIncrement;
+            }
+            finally {
+                this.timeStampLock.writeLock().unlock();
+            }
+        }
+
+        synchronized void updateClock(Message message) {
+            this.timeStampLock.writeLock().lock();
+            try {
+                for (int i = 0; i < this.clock.length; i++) {
+                    int localTimeStamp = i == processId ? (this.clock[i]+this.clockIncrement) : this.clock[i];
+                    this.clock[i] = Math.max(localTimeStamp, message.clock[i]);
+                }
+            }
+            finally {
+                this.timeStampLock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+//cumulative acknowledgements complete broadcasts in sequence order, whatever order the processes' watermarks arrive in
+public class AckTrackerTest {
+
+    @Test
+    void completesOnceEveryProcessIsPastABroadcast() {
+        AckTracker tracker = this.sent(4, 3, 2);  //leader 0, three acknowledgers, broadcasts of 2 requests
+
+        assertEquals(0, tracker.acknowledge(1, 3));
+        assertEquals(0, tracker.acknowledge(2, 1));
+        assertEquals(0, tracker.getCompletedUpTo());
+        assertEquals(2, tracker.acknowledge(3, 2), "broadcast 1 is past every watermark");
+        assertEquals(1, tracker.getCompletedUpTo());
+        assertEquals(2, tracker.acknowledge(2, 2));
+        assertEquals(2, tracker.getCompletedUpTo());
+        assertEquals(1, tracker.getOutstanding());
+    }
+
+    @Test
+    void completesEarlierBroadcastsWhenTheLaterWatermarkArrivesFirst() {
+        AckTracker tracker = this.sent(3, 5, 1);
+
+        assertEquals(0, tracker.acknowledge(1, 5));
+        assertEquals(0, tracker.acknowledge(1, 2), "an older cumulative acknowledgement is already covered");
+        assertEquals(3, tracker.acknowledge(2, 3));
+        assertEquals(3, tracker.getCompletedUpTo());
+        assertEquals(2, tracker.acknowledge(2, 5));
+        assertEquals(0, tracker.getOutstanding());
+    }
+
+    @Test
+    void ignoresAcknowledgementsPastTheLastBroadcastSent() {
+        AckTracker tracker = this.sent(2, 2, 1);
+
+        assertEquals(2, tracker.acknowledge(1, 10));
+        assertEquals(2, tracker.getCompletedUpTo());
+
+        tracker.sent(3, 1);
+        assertEquals(1, tracker.acknowledge(1, 3), "the watermark was capped at the broadcasts sent");
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        AckTracker tracker = new AckTracker(2, 2);
+        for (int seq = 1; seq <= 100; seq++) {
+            tracker.sent(seq, 1);
+        }
+        assertEquals(100, tracker.getOutstanding());
+        assertEquals(40, tracker.acknowledge(1, 40));
+        assertEquals(60, tracker.acknowledge(1, 100));
+    }
+
+    @Test
+    void resumesAfterARestoredBroadcast() {
+        AckTracker tracker = new AckTracker(3, 4);
+        tracker.restore(7);
+        tracker.sent(8, 1);
+
+        assertEquals(7, tracker.getCompletedUpTo());
+        assertEquals(1, tracker.getOutstanding());
+        assertEquals(0, tracker.acknowledge(1, 8));
+        assertEquals(1, tracker.acknowledge(2, 8));
+    }
+
+    //tracker of numProcesses processes after broadcasts 1 to count were sent, each carrying requests requests
+    private AckTracker sent(int numProcesses, int count, int requests) {
+        AckTracker tracker = new AckTracker(numProcesses, 4);
+        for (int seq = 1; seq <= count; seq++) {
+            tracker.sent(seq, requests);
+        }
+        return tracker;
+    }
+}
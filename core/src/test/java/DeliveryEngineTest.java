@@ -0,0 +1,89 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+//messages arriving early are held back and released in sequence order, each stream on it's own
+public class DeliveryEngineTest {
+
+    @Test
+    void releasesHeldBackMessagesInSequenceOrder() {
+        DeliveryEngine engine = new DeliveryEngine(2, 2);
+        Message[] messages = new Message[6];
+        for (int seq = 1; seq <= 5; seq++) {
+            messages[seq] = message(seq);
+        }
+
+        assertEquals(DeliveryEngine.HELD_BACK, engine.offer(1, 4, messages[4]));
+        assertEquals(DeliveryEngine.HELD_BACK, engine.offer(1, 2, messages[2]));
+        assertEquals(DeliveryEngine.HELD_BACK, engine.offer(1, 5, messages[5]));
+        assertNull(engine.poll(1), "nothing is deliverable before sequence number 1");
+        assertEquals(3, engine.getHeldBack());
+
+        assertEquals(DeliveryEngine.DELIVERABLE, engine.offer(1, 1, messages[1]));
+        assertSame(messages[1], engine.poll(1));
+        assertSame(messages[2], engine.poll(1));
+        assertNull(engine.poll(1), "3 is still missing");
+
+        assertEquals(DeliveryEngine.DELIVERABLE, engine.offer(1, 3, messages[3]));
+        assertSame(messages[3], engine.poll(1));
+        assertSame(messages[4], engine.poll(1));
+        assertSame(messages[5], engine.poll(1));
+        assertEquals(0, engine.getHeldBack());
+        assertEquals(6, engine.getNextExpected(1));
+    }
+
+    @Test
+    void dropsDuplicates() {
+        DeliveryEngine engine = new DeliveryEngine(1, 4);
+
+        assertEquals(DeliveryEngine.HELD_BACK, engine.offer(0, 3, message(3)));
+        assertEquals(DeliveryEngine.DUPLICATE, engine.offer(0, 3, message(3)), "already held back");
+        assertEquals(DeliveryEngine.DELIVERABLE, engine.offer(0, 1, message(1)));
+        engine.poll(0);
+        assertEquals(DeliveryEngine.DUPLICATE, engine.offer(0, 1, message(1)), "already delivered");
+        assertEquals(1, engine.getHeldBack());
+    }
+
+    @Test
+    void keepsEveryStreamApart() {
+        DeliveryEngine engine = new DeliveryEngine(3, 4);
+        Message first = message(1);
+
+        assertEquals(DeliveryEngine.HELD_BACK, engine.offer(0, 2, message(2)));
+        assertEquals(DeliveryEngine.DELIVERABLE, engine.offer(2, 1, first));
+        assertNull(engine.poll(0));
+        assertSame(first, engine.peek(2));
+        assertSame(first, engine.poll(2));
+    }
+
+    @Test
+    void holdsBackFarAheadOfItsInitialSlots() {
+        DeliveryEngine engine = new DeliveryEngine(1, 2);
+        for (int seq = 100; seq >= 2; seq--) {
+            assertEquals(DeliveryEngine.HELD_BACK, engine.offer(0, seq, message(seq)));
+        }
+        assertEquals(DeliveryEngine.DELIVERABLE, engine.offer(0, 1, message(1)));
+        for (int seq = 1; seq <= 100; seq++) {
+            assertEquals(seq, engine.poll(0).seq);
+        }
+    }
+
+    @Test
+    void restoredStreamExpectsTheNextMessage() {
+        DeliveryEngine engine = new DeliveryEngine(1, 4);
+        engine.restore(0, 11);
+
+        assertEquals(DeliveryEngine.DUPLICATE, engine.offer(0, 10, message(10)));
+        assertEquals(DeliveryEngine.DELIVERABLE, engine.offer(0, 11, message(11)));
+        engine.restore(0, 5);
+        assertEquals(11, engine.getNextExpected(0), "restoring never moves a stream back");
+    }
+
+    private static Message message(int seq) {
+        Message message = new Message("APPLICATION", 0, 1, null, seq);
+        message.seq = seq;
+        return message;
+    }
+}
@@ -0,0 +1,73 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//a cluster restarted on the delivery logs of an earlier run replays them, resumes every stream where that run left it,
+//and still delivers every message, in the same order on every process
+public class DeliveryLogRestartTest {
+
+    private static final int PROCESSES = 3;
+    private static final int MESSAGES = 50;
+
+    @TempDir
+    Path deliveryLogDir;
+
+    @AfterEach
+    void clearSettings() {
+        for (String key : new String[] {"deliveryLog", "messages", "rate", "networkDelay", "orderHistory"}) {
+            System.clearProperty(key);
+        }
+    }
+
+    @Test
+    void restartedClusterResumesFromTheLog() throws InterruptedException {
+        System.setProperty("deliveryLog", this.deliveryLogDir.toString());
+        System.setProperty("messages", String.valueOf(MESSAGES));
+        System.setProperty("rate", "1000");
+        System.setProperty("networkDelay", "false");
+        System.setProperty("orderHistory", "true");
+
+        List<Integer> firstOrder = this.runCluster(7900, 0);
+        List<Integer> secondOrder = this.runCluster(7910, PROCESSES * MESSAGES);
+
+        //message IDs depend only on the requester and it's count of requests, so both runs deliver the same set of messages
+        assertEquals(PROCESSES * MESSAGES, secondOrder.size());
+        assertEquals(firstOrder.stream().sorted().toList(), secondOrder.stream().sorted().toList());
+        assertTrue(new File(this.deliveryLogDir.toFile(), "process-0").list().length > 0);
+    }
+
+    //run a cluster until every process delivered every message, returning the order they all delivered in
+    //every process first replays the given num of deliveries of earlier runs, and resumes the same streams at the same sequence numbers
+    private List<Integer> runCluster(int basePort, int replayed) throws InterruptedException {
+        LocalCluster cluster = new LocalCluster(PROCESSES, basePort, new ProcessConfig());
+        try {
+            int[] replayedUpTo = cluster.getProcesses()[0].getReplayedUpTo();
+            for (Process process : cluster.getProcesses()) {
+                assertEquals(replayed, process.getDeliveriesReplayed());
+                assertArrayEquals(replayedUpTo, process.getReplayedUpTo());
+            }
+            assertEquals(replayed > 0, Arrays.stream(replayedUpTo).sum() > 0, "streams resume after the broadcasts of the earlier run");
+
+            assertTrue(cluster.awaitDelivery(60000), "every process delivers every message");
+            Process[] processes = cluster.getProcesses();
+            List<Integer> order = processes[0].getMessagesOrder();
+            for (Process process : processes) {
+                assertEquals(PROCESSES * MESSAGES, process.getMessagesOrder().size());
+                assertEquals(order, process.getMessagesOrder());
+            }
+            return order;
+        }
+        finally {
+            cluster.shutdown();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//records appended to a delivery log are read back in order on reopening it, a torn last record being dropped and overwritten by the next append
+public class DeliveryLogTest {
+
+    private static final int SEGMENT_SIZE = 1 << 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysRecordsInAppendOrder() throws IOException {
+        DeliveryLog log = this.open(new ArrayList<>());
+        for (int seq = 1; seq <= 10; seq++) {
+            log.append(2, seq, message(seq));
+        }
+        log.close();
+
+        List<int[]> replayed = new ArrayList<>();
+        DeliveryLog reopened = this.open(replayed);
+        assertEquals(10, reopened.getRecords());
+        for (int seq = 1; seq <= 10; seq++) {
+            assertArrayEquals(new int[] {2, seq, seq, seq + 1}, replayed.get(seq - 1));
+        }
+        reopened.close();
+    }
+
+    @Test
+    void closingStopsTheIntervalSync() throws Exception {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
+        timer.setRemoveOnCancelPolicy(true);
+        try {
+            DeliveryLog log = new DeliveryLog(this.directory.toFile(), SEGMENT_SIZE, DeliveryLog.INTERVAL, (stream, seq, message) -> {});
+            log.startSyncing(1, timer);
+            log.append(2, 1, message(1));
+            log.close();
+            log.sync(); //a sync already running when the log closed finds nothing to force
+
+            assertTrue(timer.getQueue().isEmpty(), "the periodic sync is cancelled");
+        }
+        finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Test
+    void dropsATruncatedLastRecordAndAppendsOverIt() throws IOException {
+        long lastRecordStart = this.appendRecords(5);
+        try (FileChannel channel = FileChannel.open(this.segment().toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(lastRecordStart + 6);  //cut the last record inside it's header
+        }
+        this.assertTornTailOverwritten();
+    }
+
+    @Test
+    void dropsALastRecordWithABadChecksumAndAppendsOverIt() throws IOException {
+        long lastRecordStart = this.appendRecords(5);
+        try (FileChannel channel = FileChannel.open(this.segment().toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer payloadByte = ByteBuffer.allocate(1);
+            channel.read(payloadByte, lastRecordStart + 9);
+            payloadByte.put(0, (byte) ~payloadByte.get(0)); //flip a byte of the payload, as a write torn inside the record would
+            payloadByte.rewind();
+            channel.write(payloadByte, lastRecordStart + 9);
+        }
+        this.assertTornTailOverwritten();
+    }
+
+    //reopen a log of 5 records whose last one is torn: 4 are read back, and a record appended then is read back after them
+    private void assertTornTailOverwritten() throws IOException {
+        List<int[]> replayed = new ArrayList<>();
+        DeliveryLog log = this.open(replayed);
+        assertEquals(4, replayed.size());
+        log.append(2, 5, message(50));
+        log.close();
+
+        replayed.clear();
+        log = this.open(replayed);
+        assertEquals(5, replayed.size());
+        assertArrayEquals(new int[] {2, 4, 4, 5}, replayed.get(3));
+        assertArrayEquals(new int[] {2, 5, 50, 51}, replayed.get(4));
+        log.close();
+    }
+
+    //append count records to a new log, returning the position the last one starts at
+    private long appendRecords(int count) throws IOException {
+        DeliveryLog log = this.open(new ArrayList<>());
+        for (int seq = 1; seq < count; seq++) {
+            log.append(2, seq, message(seq));
+        }
+        long lastRecordStart = log.getBytesAppended();
+        log.append(2, count, message(count));
+        log.close();
+        return lastRecordStart;
+    }
+
+    //open the log, collecting each replayed record as {stream, seq, mid, first clock entry}
+    private DeliveryLog open(List<int[]> replayed) throws IOException {
+        return new DeliveryLog(this.directory.toFile(), SEGMENT_SIZE, DeliveryLog.NONE,
+            (stream, seq, message) -> replayed.add(new int[] {stream, seq, message.mid, message.clock[0]}));
+    }
+
+    private File segment() {
+        return new File(this.directory.toFile(), String.format("segment-%020d.log", 0));
+    }
+
+    private static Message message(int mid) {
+        return new Message("APPLICATION", 2, 0, new int[] {mid + 1, 0, 3}, mid);
+    }
+}
@@ -0,0 +1,43 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+//a frame the server can't decode stops it, instead of being skipped while the frames behind it go on being rebuilt on the wrong clock
+public class InboundServerTest {
+
+    @Test
+    void stopsOnAnUndecodableFrame() throws IOException, InterruptedException {
+        List<Message> handled = new ArrayList<>();
+        CountDownLatch closed = new CountDownLatch(1);
+        InboundServer server = new InboundServer(7930, 1, 1024, new int[3][3], message -> handled.add(message), closed::countDown);
+        server.start();
+        try (Socket socket = new Socket("localhost", 7930)) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            byte[] frame = MessageCodec.encode(new Message("APPLICATION", 1, 0, new int[] {0, 1, 0}, 1));
+            out.writeInt(frame.length);
+            out.write(frame);
+            out.writeInt(3);
+            out.write(frame, 0, 3);    //a message cut after it's header
+            out.writeInt(frame.length);
+            out.write(frame);
+            out.flush();
+
+            assertTrue(closed.await(10, TimeUnit.SECONDS), "the server stops");
+        }
+        finally {
+            server.close();
+        }
+        assertNotNull(server.getFailure());
+        assertEquals(1, handled.size(), "the frame behind the undecodable one isn't handed over");
+    }
+}
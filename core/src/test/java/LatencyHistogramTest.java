@@ -0,0 +1,62 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+//every value falls in a bucket whose bounds hold it within ~3%, and quantiles report the bucket's highest value
+public class LatencyHistogramTest {
+
+    @Test
+    void smallValuesHaveTheirOwnBucket() {
+        for (long value = 0; value < 64; value++) {
+            assertEquals(value, LatencyHistogram.index(value));
+            assertEquals(value, LatencyHistogram.highestValue((int) value));
+        }
+    }
+
+    @Test
+    void everyValueIsWithinTheBoundsOfItsBucket() {
+        long[] values = {64, 65, 127, 128, 1000, 1_000_000, 123_456_789, 1L << 40, (1L << 40) + 1, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.index(value);
+            long highest = LatencyHistogram.highestValue(index);
+            long lowest = index == 0 ? 0 : LatencyHistogram.highestValue(index - 1) + 1;
+
+            assertTrue(lowest <= value && value <= highest, value + " in [" + lowest + ", " + highest + "]");
+            assertTrue(highest - lowest <= lowest / 32, "bucket of " + value + " spans at most 1/32 of it's magnitude");
+        }
+    }
+
+    @Test
+    void bucketsFollowEachOtherWithoutGaps() {
+        for (int index = 1; index < LatencyHistogram.index(Long.MAX_VALUE); index++) {
+            long lowest = LatencyHistogram.highestValue(index - 1) + 1;
+            assertEquals(index, LatencyHistogram.index(lowest));
+            assertEquals(index, LatencyHistogram.index(LatencyHistogram.highestValue(index)));
+        }
+    }
+
+    @Test
+    void quantilesAreTheHighestValueOfTheirBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50_500, histogram.getMean());
+        assertEquals(100_000, histogram.getMaximum());
+        long p50 = histogram.getValueAtQuantile(0.50);
+        assertEquals(LatencyHistogram.highestValue(LatencyHistogram.index(50_000)), p50);
+        assertEquals(100_000, histogram.getValueAtQuantile(1.0), "capped at the maximum recorded");
+    }
+
+    @Test
+    void negativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getValueAtQuantile(0.99));
+    }
+}
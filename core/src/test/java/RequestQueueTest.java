@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+//a sender's requests are taken in the order they were offered, and a full queue refuses more instead of dropping one
+public class RequestQueueTest {
+
+    @Test
+    void refusesARequestOnceFull() {
+        RequestQueue queue = new RequestQueue(3);   //rounded up to 4
+        assertEquals(4, queue.capacity());
+        for (int mid = 0; mid < 4; mid++) {
+            assertTrue(queue.offer(request(mid)));
+        }
+
+        assertFalse(queue.offer(request(4)));
+        assertEquals(4, queue.size());
+        assertEquals(0, queue.poll().mid, "the refused request didn't overwrite the head");
+        assertTrue(queue.offer(request(4)), "taking a request makes room for one");
+    }
+
+    @Test
+    void takesRequestsInOfferOrderAcrossTheRing() {
+        RequestQueue queue = new RequestQueue(2);
+        assertNull(queue.peek());
+        for (int mid = 0; mid < 10; mid++) {
+            Message request = request(mid);
+            assertTrue(queue.offer(request));
+            assertSame(request, queue.peek());
+            assertSame(request, queue.poll());
+        }
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void keepsEveryRequestOfConcurrentProducers() throws InterruptedException {
+        RequestQueue queue = new RequestQueue(4096);
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    queue.offer(request(producer * 1000 + i));
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        Set<Integer> taken = new HashSet<>();
+        Message request;
+        while((request = queue.poll()) != null) {
+            taken.add(request.mid);
+        }
+        assertEquals(4000, taken.size());
+    }
+
+    @Test
+    void sequencerRefusesARequestPastItsSendersCredits() {
+        Sequencer sequencer = new Sequencer(0, 2, 2, 4, SequencingPolicy.of("round-robin", SequencingPolicy.weights(null, 2)), null);
+        assertTrue(sequencer.queue(request(0)));
+        assertTrue(sequencer.queue(request(1)));
+        assertFalse(sequencer.queue(request(2)), "the sender's queue is sized to it's credits");
+    }
+
+    private static Message request(int mid) {
+        return new Message("REQ_MASTER", 1, 0, null, mid);
+    }
+}
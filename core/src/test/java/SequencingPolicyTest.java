@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+//the order a sequencer takes the queued requests of every sender in
+public class SequencingPolicyTest {
+
+    @Test
+    void roundRobinTakesOneRequestOfEachSenderInTurn() {
+        RequestQueue[] queues = queues(new int[] {3, 1, 2}, null);
+
+        assertArrayEquals(new int[] {0, 1, 2, 0, 2, 0}, take(SequencingPolicy.of("round-robin", SequencingPolicy.weights(null, 3)), queues));
+    }
+
+    @Test
+    void weightedTakesUpToTheWeightOfASenderInARow() {
+        RequestQueue[] queues = queues(new int[] {5, 2, 2}, null);
+
+        assertArrayEquals(new int[] {0, 0, 0, 1, 2, 0, 0, 1, 2}, take(SequencingPolicy.of("weighted", SequencingPolicy.weights("3,1", 3)), queues));
+    }
+
+    @Test
+    void oldestFirstTakesTheEarliestRequest() {
+        RequestQueue[] queues = queues(new int[] {2, 2}, new long[][] {{10, 40}, {20, 30}});
+
+        assertArrayEquals(new int[] {0, 1, 1, 0}, take(SequencingPolicy.of("oldest-first", null), queues));
+    }
+
+    @Test
+    void weightsDefaultToOne() {
+        assertArrayEquals(new int[] {4, 1, 1}, SequencingPolicy.weights("4", 3));
+        assertArrayEquals(new int[] {1, 1}, SequencingPolicy.weights("0,-2", 2));
+        assertEquals(2, SequencingPolicy.weights("", 2).length);
+    }
+
+    //senders of the requests in the order the policy takes them, until none is left
+    private static int[] take(SequencingPolicy policy, RequestQueue[] queues) {
+        int total = 0;
+        for (RequestQueue queue : queues) {
+            total += queue.size();
+        }
+        int[] senders = new int[total];
+        for (int i = 0; i < total; i++) {
+            senders[i] = policy.next(queues);
+            queues[senders[i]].poll();
+        }
+        assertEquals(-1, policy.next(queues));
+        return senders;
+    }
+
+    //a queue per sender holding counts[sender] requests, with the given timestamps if any
+    private static RequestQueue[] queues(int[] counts, long[][] timestamps) {
+        RequestQueue[] queues = new RequestQueue[counts.length];
+        for (int sender = 0; sender < counts.length; sender++) {
+            queues[sender] = new RequestQueue(8);
+            for (int i = 0; i < counts[sender]; i++) {
+                Message request = new Message("REQ_MASTER", sender, 0, null, i);
+                if(timestamps != null) { request.timestamp = timestamps[sender][i]; }
+                queues[sender].offer(request);
+            }
+        }
+        return queues;
+    }
+}
@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+//a broadcast is causally ready once it is the next one of it's sender and every broadcast it depends on was delivered
+public class VectorClockTest {
+
+    @Test
+    void nextBroadcastOfTheSenderIsReady() {
+        VectorClock clock = clock(0, 2, 1);
+
+        assertTrue(clock.isCausallyReady(new int[] {0, 3, 1}, 1));
+        assertTrue(clock.isCausallyReady(new int[] {0, 3, 0}, 1), "an older dependency is delivered already");
+    }
+
+    @Test
+    void skippedOrRepeatedBroadcastOfTheSenderIsNotReady() {
+        VectorClock clock = clock(0, 2, 1);
+
+        assertFalse(clock.isCausallyReady(new int[] {0, 4, 1}, 1), "broadcast 3 of the sender is missing");
+        assertFalse(clock.isCausallyReady(new int[] {0, 2, 1}, 1), "broadcast 2 of the sender was delivered");
+        assertFalse(clock.isCausallyReady(new int[] {0, 1, 1}, 1));
+    }
+
+    @Test
+    void broadcastDependingOnAnUndeliveredOneIsNotReady() {
+        VectorClock clock = clock(0, 2, 1);
+
+        assertFalse(clock.isCausallyReady(new int[] {0, 3, 2}, 1));
+        assertFalse(clock.isCausallyReady(new int[] {1, 3, 1}, 1));
+    }
+
+    @Test
+    void firstBroadcastOfAFreshClockIsReady() {
+        VectorClock clock = new VectorClock(3, 0);
+
+        assertTrue(clock.isCausallyReady(new int[] {0, 0, 1}, 2));
+        assertFalse(clock.isCausallyReady(new int[] {0, 0, 0}, 2));
+    }
+
+    @Test
+    void readyWithEntriesFarApart() {
+        VectorClock clock = clock(Integer.MAX_VALUE - 1, 0, 5);
+
+        assertTrue(clock.isCausallyReady(new int[] {0, 1, 5}, 1));
+        assertTrue(clock.isCausallyReady(new int[] {Integer.MAX_VALUE - 1, 1, 0}, 1));
+        assertFalse(clock.isCausallyReady(new int[] {Integer.MAX_VALUE, 1, 0}, 1));
+    }
+
+    @Test
+    void comparesTimestamps() {
+        assertEquals(VectorClock.EQUAL, VectorClock.compare(new int[] {1, 2}, new int[] {1, 2}));
+        assertTrue(VectorClock.happenedBefore(new int[] {1, 2}, new int[] {1, 3}));
+        assertEquals(VectorClock.AFTER, VectorClock.compare(new int[] {2, 2}, new int[] {1, 2}));
+        assertTrue(VectorClock.concurrent(new int[] {2, 1}, new int[] {1, 2}));
+        assertTrue(VectorClock.dominates(new int[] {2, 2}, new int[] {1, 2}));
+        assertFalse(VectorClock.dominates(new int[] {2, 1}, new int[] {1, 2}));
+    }
+
+    @Test
+    void updateCountsTheDeliveryAsALocalEvent() {
+        VectorClock clock = clock(3, 0, 0);
+        clock.updateClock(new Message("APPLICATION", 1, 0, new int[] {1, 4, 2}, 0));
+
+        assertArrayEquals(new int[] {4, 4, 2}, clock.getVectorClock());
+    }
+
+    //clock of process 0 having delivered the given entries
+    private static VectorClock clock(int... entries) {
+        VectorClock clock = new VectorClock(entries.length, 0);
+        clock.mergeClock(entries);
+        return clock;
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+//leader's record of which sequenced broadcasts every other process has delivered
+//acknowledgements are cumulative: since broadcasts are delivered in sequence order, an acknowledgement of seq k covers every broadcast up to k,
+//so each process only needs a watermark, and outstanding broadcasts a count of processes past them, kept in a ring freed on completion
+public class AckTracker {
+
+    private int numAcknowledgers;   //num of processes that must acknowledge each broadcast
+    private int[] acknowledgedUpTo; //highest sequence number acknowledged by each process (watermark)
+    private int sentUpTo;   //highest sequence number sent
+    private int completedUpTo;  //highest sequence number delivered by every process
+
+    private int[] acknowledgements; //num of processes past each outstanding broadcast, indexed by sequence number modulo capacity
+    private int[] requests; //num of requests carried by each outstanding broadcast, same indexing
+    private long[] sentTimes;   //System.nanoTime() each outstanding broadcast was sent at, same indexing
+    private LatencyHistogram completionLatency; //time from sending a broadcast to it's last acknowledgement (null when not measured)
+
+    //constructor
+    public AckTracker(int numProcesses, int initialCapacity) {
+        this(numProcesses, initialCapacity, null);
+    }
+
+    public AckTracker(int numProcesses, int initialCapacity, LatencyHistogram completionLatency) {
+        this.numAcknowledgers = numProcesses - 1;   //the leader delivers it's own broadcasts when sending them
+        this.acknowledgedUpTo = new int[numProcesses];
+        int capacity = Integer.highestOneBit(Math.max(2, initialCapacity) - 1) << 1;
+        this.acknowledgements = new int[capacity];
+        this.requests = new int[capacity];
+        this.sentTimes = new long[capacity];
+        this.completionLatency = completionLatency;
+    }
+
+    //register the broadcast of the next sequence number, carrying the given num of requests
+    public void sent(int seq, int requestCount) {
+        if(seq - this.completedUpTo > this.acknowledgements.length) {
+            this.grow(seq - this.completedUpTo);
+        }
+        int slot = seq & (this.acknowledgements.length - 1);
+        this.acknowledgements[slot] = 0;
+        this.requests[slot] = requestCount;
+        if(this.completionLatency != null) { this.sentTimes[slot] = System.nanoTime(); }
+        this.sentUpTo = seq;
+    }
+
+    //apply a cumulative acknowledgement of every broadcast up to seq by the process
+    //returns the num of requests carried by the broadcasts it completed
+    public int acknowledge(int processId, int seq) {
+        seq = Math.min(seq, this.sentUpTo);
+        int previous = this.acknowledgedUpTo[processId];
+        if(seq <= previous) { return 0; }
+        this.acknowledgedUpTo[processId] = seq;
+
+        //count the process once for every broadcast it newly acknowledged, each (process, broadcast) pair is counted once overall
+        int mask = this.acknowledgements.length - 1;
+        for (int s = Math.max(previous, this.completedUpTo) + 1; s <= seq; s++) {
+            this.acknowledgements[s & mask]++;
+        }
+
+        //broadcasts complete in order, since every watermark past a broadcast is also past all earlier ones
+        int served = 0;
+        long now = this.completionLatency != null ? System.nanoTime() : 0;
+        while(this.completedUpTo < this.sentUpTo && this.acknowledgements[(this.completedUpTo + 1) & mask] == this.numAcknowledgers) {
+            this.completedUpTo++;
+            served += this.requests[this.completedUpTo & mask];
+            if(this.completionLatency != null) { this.completionLatency.record(now - this.sentTimes[this.completedUpTo & mask]); }
+        }
+        return served;
+    }
+
+    //resume after a broadcast sequenced as seq by an earlier run, every broadcast up to it taken as delivered by every process
+    //called before the first broadcast is sent
+    public void restore(int seq) {
+        this.sentUpTo = seq;
+        this.completedUpTo = seq;
+        Arrays.fill(this.acknowledgedUpTo, seq);
+    }
+
+    //num of broadcasts sent but not yet delivered by every process
+    public int getOutstanding() {
+        return this.sentUpTo - this.completedUpTo;
+    }
+
+    //highest sequence number delivered by every process
+    public int getCompletedUpTo() {
+        return this.completedUpTo;
+    }
+
+    //enlarge the ring to a power of 2 holding at least size outstanding broadcasts
+    private void grow(int size) {
+        int capacity = this.acknowledgements.length;
+        while(capacity < size) { capacity <<= 1; }
+
+        int[] largerAcknowledgements = new int[capacity];
+        int[] largerRequests = new int[capacity];
+        long[] largerSentTimes = new long[capacity];
+        for (int s = this.completedUpTo + 1; s <= this.sentUpTo; s++) {
+            largerAcknowledgements[s & (capacity - 1)] = this.acknowledgements[s & (this.acknowledgements.length - 1)];
+            largerRequests[s & (capacity - 1)] = this.requests[s & (this.requests.length - 1)];
+            largerSentTimes[s & (capacity - 1)] = this.sentTimes[s & (this.sentTimes.length - 1)];
+        }
+        this.acknowledgements = largerAcknowledgements;
+        this.requests = largerRequests;
+        this.sentTimes = largerSentTimes;
+    }
+}
@@ -0,0 +1,35 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+//pool of equally sized direct buffers, reused across connections instead of allocating one per connection
+public class BufferPool {
+
+    private int bufferSize; //capacity of every pooled buffer
+    private ConcurrentLinkedQueue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<ByteBuffer>();   //buffers ready to be handed out
+
+    //constructor
+    public BufferPool(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    //hand out a cleared buffer, allocating a new one when the pool is empty
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = this.freeBuffers.poll();
+        if(buffer == null) {
+            return ByteBuffer.allocateDirect(this.bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    //give a buffer back to the pool, buffers of any other size are left to the garbage collector
+    public void release(ByteBuffer buffer) {
+        if(buffer != null && buffer.isDirect() && buffer.capacity() == this.bufferSize) {
+            this.freeBuffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+}
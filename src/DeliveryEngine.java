@@ -0,0 +1,103 @@
+//hold-back queue deciding when messages can be delivered, with one ordered stream per sender
+//each stream keeps it's next expected sequence number and indexes held back messages by sequence number,
+//so accepting a message and draining the next deliverable one are both O(1)
+public class DeliveryEngine {
+
+    //outcome of offering a message
+    public static final int DUPLICATE = -1; //already delivered or already held back, dropped
+    public static final int HELD_BACK = 0;  //stored until it's predecessors are delivered
+    public static final int DELIVERABLE = 1;    //the next expected message of it's stream
+
+    private Stream[] streams;   //ordered stream of each sender, indexed by sender ID
+    private int initialSlots;   //initial hold-back capacity of a stream (power of 2)
+    private int heldBack;   //num of messages currently held back in all streams
+
+    //constructor
+    public DeliveryEngine(int numSenders, int initialSlots) {
+        this.streams = new Stream[numSenders];
+        this.initialSlots = Integer.highestOneBit(Math.max(2, initialSlots) - 1) << 1;
+    }
+
+    //store a message with it's sequence number in the sender's stream
+    public int offer(int sender, long sequence, Message message) {
+        Stream stream = this.getStream(sender);
+        if(sequence < stream.nextExpected) { return DUPLICATE; }
+
+        //grow the slots until the message's distance from the next expected one fits
+        if(sequence - stream.nextExpected >= stream.slots.length) {
+            stream.grow(sequence - stream.nextExpected + 1);
+        }
+
+        int slot = (int) (sequence & (stream.slots.length - 1));
+        if(stream.slots[slot] != null) { return DUPLICATE; }
+        stream.slots[slot] = message;
+        this.heldBack++;
+
+        return sequence == stream.nextExpected ? DELIVERABLE : HELD_BACK;
+    }
+
+    //remove and return the next expected message of the sender, or null if it hasn't arrived yet
+    //calling this until null drains every message that became deliverable, without recursion
+    public Message poll(int sender) {
+        Stream stream = this.getStream(sender);
+        int slot = (int) (stream.nextExpected & (stream.slots.length - 1));
+        Message message = stream.slots[slot];
+        if(message == null) { return null; }
+
+        stream.slots[slot] = null;
+        stream.nextExpected++;
+        this.heldBack--;
+        return message;
+    }
+
+    //return, without removing it, the next expected message of the sender, or null if it hasn't arrived yet
+    public Message peek(int sender) {
+        Stream stream = this.getStream(sender);
+        return stream.slots[(int) (stream.nextExpected & (stream.slots.length - 1))];
+    }
+
+    //sequence number of the next message expected from the sender
+    public long getNextExpected(int sender) {
+        return this.getStream(sender).nextExpected;
+    }
+
+    //move the sender's stream on to nextExpected, dropping nothing, Eg: after replaying it's deliveries from a log
+    public void restore(int sender, long nextExpected) {
+        Stream stream = this.getStream(sender);
+        stream.nextExpected = Math.max(stream.nextExpected, nextExpected);
+    }
+
+    //num of messages waiting for their predecessors in all streams
+    public int getHeldBack() {
+        return this.heldBack;
+    }
+
+    private Stream getStream(int sender) {
+        if(this.streams[sender] == null) {
+            this.streams[sender] = new Stream(this.initialSlots);
+        }
+        return this.streams[sender];
+    }
+
+    //next expected sequence number of a sender, and it's held back messages in slots indexed by sequence number modulo capacity
+    private static class Stream {
+        long nextExpected = 1;  //sequence numbers start at 1
+        Message[] slots;
+
+        Stream(int capacity) {
+            this.slots = new Message[capacity];
+        }
+
+        //enlarge the slots to a power of 2 holding at least distance messages, keeping every message at it's sequence number
+        void grow(long distance) {
+            int capacity = this.slots.length;
+            while(capacity < distance) { capacity <<= 1; }
+
+            Message[] larger = new Message[capacity];
+            for (long sequence = this.nextExpected; sequence < this.nextExpected + this.slots.length; sequence++) {
+                larger[(int) (sequence & (capacity - 1))] = this.slots[(int) (sequence & (this.slots.length - 1))];
+            }
+            this.slots = larger;
+        }
+    }
+}
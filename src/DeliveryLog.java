@@ -0,0 +1,224 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+//append-only log of delivered messages, written through memory-mapped segment files rolled at a fixed size,
+//and replayed on opening so that a restarted process gets back it's delivery history
+//record: [int length][int crc32 of the payload][payload: varint stream][varint seq][message encoded by MessageCodec]
+//a record of length 0 ends a segment; a torn record (bad length or checksum) ends the log, and is overwritten by the next append
+//appends only copy into the mapping, making records durable is up to the sync policy:
+//none (left to the OS writing back the page cache), interval (forced every syncInterval by a timer, committing every append since the last one
+//at once), always (forced on each commit, which the process calls once per delivering step, so a whole batch shares one fsync)
+public class DeliveryLog {
+
+    public static final int NONE = 0;
+    public static final int INTERVAL = 1;
+    public static final int ALWAYS = 2;
+
+    private static final int HEADER = 8;    //length and checksum of a record
+    private static final int MAXIMUM_PREFIX = 10;   //stream and seq varints
+
+    //handler of each record read back on opening the log, in the order they were appended
+    public interface Replay {
+        void replayed(int stream, int seq, Message message);
+    }
+
+    private File directory;
+    private int segmentSize;    //size of each segment file, mapped whole
+    private int syncPolicy; //NONE, INTERVAL or ALWAYS
+    private FileChannel channel;    //channel of the segment being appended to
+    private MappedByteBuffer segment;   //mapping of the segment being appended to
+    private long segmentStart;  //index of the first record of the segment being appended to
+    private int syncedPosition; //position up to which the segment is forced to disk
+    private long records;   //num of records in the log, replayed and appended
+    private long bytesAppended; //num of bytes of the records appended since opening
+    private CRC32 checksum = new CRC32();
+    private ScheduledFuture<?> syncing; //periodic sync with the interval policy (null when not started)
+
+    //open the log in directory, replaying every record already in it to handler before appending after the last one
+    public DeliveryLog(File directory, int segmentSize, int syncPolicy, Replay handler) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        directory.mkdirs();
+
+        File[] segments = directory.listFiles((dir, name) -> name.startsWith("segment-") && name.endsWith(".log"));
+        Arrays.sort(segments);  //names hold the zero-padded index of their first record
+        for (int i = 0; i < segments.length; i++) {
+            this.openSegment(segments[i], startOf(segments[i]));
+            boolean complete = this.replaySegment(handler);
+            if(!complete || i == segments.length - 1) {
+                //a torn record ends the log: later segments were written after it was lost, so they are dropped
+                for (int j = i + 1; j < segments.length; j++) {
+                    Log.error("dropping delivery log segment " + segments[j] + " written after a torn record");
+                    segments[j].delete();
+                }
+                return;
+            }
+            this.closeSegment();
+        }
+        this.openSegment(segmentFile(0), 0);
+    }
+
+    //policy named by a setting: none, interval or always
+    public static int syncPolicy(String name) {
+        switch (name) {
+            case "none": return NONE;
+            case "interval": return INTERVAL;
+            case "always": return ALWAYS;
+            default: throw new IllegalArgumentException("no such sync policy " + name);
+        }
+    }
+
+    //force the appended records every intervalMillis on the given timer, when syncing by interval
+    public void startSyncing(int intervalMillis, ScheduledExecutorService timer) {
+        if(this.syncPolicy != INTERVAL) { return; }
+        this.syncing = timer.scheduleAtFixedRate(this::sync, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //append the delivery of a message, sequenced as seq in stream (the sequencer, or the sender in causal mode)
+    public synchronized void append(int stream, int seq, Message message) throws IOException {
+        int maximumSize = HEADER + MAXIMUM_PREFIX + MessageCodec.maximumEncodedSize(message);
+        if(this.segment.remaining() < maximumSize) {
+            if(maximumSize > this.segmentSize - HEADER) { throw new IOException("message of " + maximumSize + " bytes doesn't fit a delivery log segment"); }
+            this.rollSegment();
+        }
+
+        int start = this.segment.position();
+        this.segment.position(start + HEADER);
+        MessageCodec.putVarInt(this.segment, stream);
+        MessageCodec.putVarInt(this.segment, seq);
+        MessageCodec.encode(message, this.segment);
+        int end = this.segment.position();
+
+        this.checksum.reset();
+        this.checksum.update(this.segment.duplicate().position(start + HEADER).limit(end));
+        this.segment.putInt(start + 4, (int) this.checksum.getValue());
+        this.segment.putInt(start, end - start - HEADER);
+        this.records++;
+        this.bytesAppended += end - start;
+    }
+
+    //make the records appended so far durable, if the sync policy asks for it on every commit
+    public void commit() {
+        if(this.syncPolicy == ALWAYS) { this.sync(); }
+    }
+
+    //force the records appended since the last sync to disk, doing nothing once the log is closed
+    public synchronized void sync() {
+        if(this.segment == null) { return; }
+        int position = this.segment.position();
+        if(position > this.syncedPosition) {
+            this.segment.force(this.syncedPosition, position - this.syncedPosition);
+            this.syncedPosition = position;
+        }
+    }
+
+    public synchronized long getRecords() {
+        return this.records;
+    }
+
+    public synchronized long getBytesAppended() {
+        return this.bytesAppended;
+    }
+
+    //stop the periodic sync, force the last records, and close the segment being appended to
+    public synchronized void close() {
+        if(this.syncing != null) { this.syncing.cancel(false); }
+        if(this.segment == null) { return; }
+        if(this.syncPolicy != NONE) { this.sync(); }
+        this.closeSegment();
+    }
+
+    //read every record of the mapped segment, leaving it's position after the last valid one
+    //returns false when the segment ends on a torn record
+    private boolean replaySegment(Replay handler) {
+        ByteBuffer buffer = this.segment;
+        while(buffer.remaining() >= HEADER) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if(length == 0) {
+                buffer.position(start);
+                return true;
+            }
+            if(length < 0 || length > buffer.remaining() - HEADER) {
+                return this.truncate(start);
+            }
+
+            this.checksum.reset();
+            this.checksum.update(buffer.duplicate().position(start + HEADER).limit(start + HEADER + length));
+            if((int) this.checksum.getValue() != buffer.getInt(start + 4)) {
+                return this.truncate(start);
+            }
+
+            ByteBuffer payload = buffer.duplicate().position(start + HEADER).limit(start + HEADER + length);
+            try {
+                int stream = MessageCodec.getVarInt(payload);
+                int seq = MessageCodec.getVarInt(payload);
+                handler.replayed(stream, seq, MessageCodec.decode(payload, null));
+            }
+            catch (IllegalArgumentException | BufferUnderflowException e) {
+                return this.truncate(start);
+            }
+            buffer.position(start + HEADER + length);
+            this.records++;
+        }
+        return true;
+    }
+
+    //drop a torn record and whatever follows it in the segment, so that appending after start leaves no stale bytes behind
+    private boolean truncate(int start) {
+        Log.error("delivery log truncated after " + this.records + " records, at a torn record");
+        for (int i = start; i < this.segment.limit(); i++) {
+            this.segment.put(i, (byte) 0);
+        }
+        this.segment.position(start);
+        return false;
+    }
+
+    //close the full segment, and map a new one starting at the next record
+    private void rollSegment() throws IOException {
+        if(this.segment.remaining() >= HEADER) { this.segment.putInt(this.segment.position(), 0); }  //mapped files start zeroed, so this only matters over stale bytes
+        if(this.syncPolicy != NONE) { this.sync(); }
+        this.closeSegment();
+        this.openSegment(this.segmentFile(this.records), this.records);
+    }
+
+    //map a segment whole, keeping the size of an existing one written with another segment size
+    private void openSegment(File file, long start) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = this.channel.size() > 0 ? Math.min(this.channel.size(), Integer.MAX_VALUE) : this.segmentSize;
+        this.segment = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.segmentStart = start;
+        this.syncedPosition = 0;
+    }
+
+    //the mapping itself is released once unreachable, since mapped buffers can't be unmapped explicitly
+    private void closeSegment() {
+        try {
+            this.channel.close();
+        }
+        catch (IOException e) {
+            Log.error("couldn't close delivery log segment starting at " + this.segmentStart + ": " + e);
+        }
+        this.segment = null;
+    }
+
+    private File segmentFile(long start) {
+        return new File(this.directory, String.format("segment-%020d.log", start));
+    }
+
+    private static long startOf(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+    }
+}
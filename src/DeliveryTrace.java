@@ -0,0 +1,110 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+//compact binary trace of the delivery order of a process, one record per delivered message, instead of printing the whole order on each delivery
+//record: [varint mid][varint seq][varint group][varint sender], appended through a buffer and flushed on close
+//usage: java DeliveryTrace <trace file> to print the delivery order it holds
+public class DeliveryTrace {
+
+    private OutputStream output;
+    private long records;   //num of deliveries traced
+
+    //constructor
+    public DeliveryTrace(File file) throws IOException {
+        this.output = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+    }
+
+    //file the trace of a process is written to in the given directory
+    public static File fileOf(File directory, int processId) {
+        return new File(directory, "trace-" + processId + ".bin");
+    }
+
+    //append the delivery of a message, sequenced by seq (0 in causal mode) and requested by sender
+    public synchronized void append(int mid, int seq, int group, int sender) {
+        try {
+            putVarInt(mid);
+            putVarInt(seq);
+            putVarInt(group);
+            putVarInt(sender);
+            this.records++;
+        }
+        catch (IOException e) {
+            Log.error("couldn't trace delivery of " + mid + ": " + e);
+        }
+    }
+
+    public synchronized long getRecords() {
+        return this.records;
+    }
+
+    //write the buffered records to the file, Eg: once every message is delivered
+    public synchronized void flush() {
+        try {
+            this.output.flush();
+        }
+        catch (IOException e) {
+            Log.error("couldn't flush delivery trace: " + e);
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            this.output.close();
+        }
+        catch (IOException e) {
+            Log.error("couldn't close delivery trace: " + e);
+        }
+    }
+
+    private void putVarInt(int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            this.output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.output.write(value);
+    }
+
+    //read the message IDs of a trace, in delivery order
+    public static List<Integer> readOrder(File file) throws IOException {
+        List<Integer> order = new ArrayList<Integer>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while(true) {
+                int mid;
+                try {
+                    mid = getVarInt(input);
+                }
+                catch (EOFException e) {
+                    return order;
+                }
+                getVarInt(input);
+                getVarInt(input);
+                getVarInt(input);
+                order.add(mid);
+            }
+        }
+    }
+
+    private static int getVarInt(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) { return value; }
+        }
+        throw new IOException("malformed varint in delivery trace");
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Integer> order = readOrder(new File(args[0]));
+        System.out.println(order.size() + " deliveries: " + order);
+    }
+}
@@ -0,0 +1,53 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//a message encoded once, with it's length prefix, into a direct buffer shared by every outbound queue it is sent on
+//each queue holding the frame holds a reference to it, and the buffer goes back to it's pool when the last one is released,
+//so a broadcast costs one encoding however many processes it goes to, and peers write it straight from the shared buffer
+public class Frame {
+
+    private ByteBuffer buffer;  //[int length][encoded message], from position 0 to the limit
+    private BufferPool pool;    //pool the buffer goes back to (buffers too large for it are left to the garbage collector)
+    private AtomicInteger references = new AtomicInteger(1);    //the encoder's reference, until it releases it
+
+    private Frame(ByteBuffer buffer, BufferPool pool) {
+        this.buffer = buffer;
+        this.pool = pool;
+    }
+
+    //encode a message into a pooled buffer, with differential clocks when lastSentClock is given (updated in place)
+    //the frame starts with a single reference, owned by the caller
+    public static Frame encode(Message message, BufferPool pool, int[] lastSentClock) {
+        int maximumSize = 4 + MessageCodec.maximumEncodedSize(message);
+        ByteBuffer buffer = maximumSize <= pool.getBufferSize() ? pool.acquire() : ByteBuffer.allocateDirect(maximumSize);
+        buffer.position(4);
+        MessageCodec.encode(message, buffer, lastSentClock);
+        buffer.putInt(0, buffer.position() - 4);
+        buffer.flip();
+        return new Frame(buffer, pool);
+    }
+
+    //take one more reference, Eg: for each outbound queue the frame is added to
+    public Frame retain() {
+        this.references.incrementAndGet();
+        return this;
+    }
+
+    //give back a reference, returning the buffer to the pool with the last one
+    public void release() {
+        if(this.references.decrementAndGet() == 0) {
+            this.pool.release(this.buffer);
+            this.buffer = null;
+        }
+    }
+
+    //view of the whole frame with it's own position, for one peer to write without copying the bytes
+    public ByteBuffer view() {
+        return this.buffer.duplicate();
+    }
+
+    //num of bytes of the frame, length prefix included
+    public int size() {
+        return this.buffer.limit();
+    }
+}
@@ -0,0 +1,339 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+//non-blocking receive path: a few Selector loops serve every inbound connection of the process
+//frames are decoded incrementally out of pooled buffers, and each message is handed to the handler on it's loop thread
+//a connection whose message the handler has no room for stops being read until resume, pushing back on it's sender like a full socket buffer,
+//while the loop goes on serving every other connection
+//a frame that can't be decoded stops the server: it's message is lost for good, and with differential clocks every later clock of it's sender would be rebuilt wrong
+public class InboundServer {
+
+    private int port;   //receiving port of this process
+    private Predicate<Message> handler; //called with every decoded message, in the order frames arrive on a connection (false when it has no room for it)
+    private Runnable onClose;   //called once the server has stopped
+    private int[][] lastReceivedClocks; //last clock received from each process, to rebuild differential clocks (null when disabled)
+
+    private ServerSocketChannel serverChannel;  //accepts connections from all other processes
+    private SelectorLoop[] loops;   //loop 0 also accepts, connections are spread over all loops
+    private int nextLoop;   //loop that gets the next accepted connection
+    private BufferPool bufferPool;  //read buffers of the connections
+
+    private volatile String failure;    //why the server stopped on an undecodable frame (null otherwise)
+
+    private AtomicLong connectionsAccepted = new AtomicLong();  //num of inbound connections accepted
+    private AtomicLong framesReceived = new AtomicLong();   //num of inbound frames decoded
+    private AtomicLong bytesReceived = new AtomicLong();    //num of inbound bytes read
+
+    //constructor
+    public InboundServer(int port, int numLoops, int bufferSize, int[][] lastReceivedClocks, Predicate<Message> handler, Runnable onClose) {
+        this.port = port;
+        this.lastReceivedClocks = lastReceivedClocks;
+        this.handler = handler;
+        this.onClose = onClose;
+        this.loops = new SelectorLoop[Math.max(1, numLoops)];
+        this.bufferPool = new BufferPool(bufferSize);
+    }
+
+    //bind the receiving port and start the selector loops
+    public void start() throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(this.port));
+        this.serverChannel.configureBlocking(false);
+
+        for (int i = 0; i < this.loops.length; i++) {
+            this.loops[i] = new SelectorLoop(Selector.open());
+        }
+        this.serverChannel.register(this.loops[0].selector, SelectionKey.OP_ACCEPT);
+
+        for (int i = 0; i < this.loops.length; i++) {
+            Thread thread = new Thread(this.loops[i], "selector-" + this.port + "-" + i);
+            thread.start();
+        }
+    }
+
+    //stop accepting and close every connection
+    public void close() {
+        try {
+            if(this.serverChannel != null) { this.serverChannel.close(); }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (SelectorLoop loop : this.loops) {
+            if(loop != null) { loop.close(); }
+        }
+    }
+
+    //hand the messages of the paused connections to the handler again, and read from the connections it takes them all from
+    public void resume() {
+        for (SelectorLoop loop : this.loops) {
+            if(loop != null) { loop.resume(); }
+        }
+    }
+
+    //accept every pending connection, handing each one to the next loop
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while((channel = this.serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            this.connectionsAccepted.incrementAndGet();
+
+            SelectorLoop loop = this.loops[this.nextLoop];
+            this.nextLoop = (this.nextLoop + 1) % this.loops.length;
+            loop.register(channel);
+        }
+    }
+
+    //stop the server on a frame it can't decode, before the frames behind it are handed over
+    private void fail(String reason) {
+        Log.error(reason);
+        if(this.failure == null) { this.failure = reason; }
+        this.close();
+    }
+
+    //why the server stopped on an undecodable frame, or null
+    public String getFailure() {
+        return this.failure;
+    }
+
+    public long getConnectionsAccepted() {
+        return this.connectionsAccepted.get();
+    }
+
+    public long getFramesReceived() {
+        return this.framesReceived.get();
+    }
+
+    public long getBytesReceived() {
+        return this.bytesReceived.get();
+    }
+
+    //a single thread multiplexing many non-blocking connections
+    private class SelectorLoop implements Runnable {
+
+        private Selector selector;
+        private ConcurrentLinkedQueue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<SocketChannel>(); //accepted channels waiting to be registered by this loop
+        private List<SelectionKey> paused = new ArrayList<SelectionKey>();  //keys of the connections not read, their handler having had no room (loop thread only)
+        private volatile boolean resumeRequested;   //set when the handler made room, the paused connections being resumed on the next wakeup
+        private volatile boolean closed;
+
+        SelectorLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        //hand over an accepted channel, registered from the loop thread itself
+        void register(SocketChannel channel) {
+            this.pendingChannels.offer(channel);
+            this.selector.wakeup();
+        }
+
+        void resume() {
+            this.resumeRequested = true;
+            this.selector.wakeup();
+        }
+
+        void close() {
+            this.closed = true;
+            this.selector.wakeup();
+        }
+
+        //hand each paused connection's message to the handler again, reading from the connection again once it took every buffered one
+        //a connection is paused before the loop selects again, so a resume requested meanwhile is never missed
+        private void resumePaused() {
+            Iterator<SelectionKey> keys = this.paused.iterator();
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                if(!key.isValid()) {
+                    keys.remove();
+                    continue;
+                }
+                InboundConnection connection = (InboundConnection) key.attachment();
+                connection.resume();
+                if(connection.isUndecodable()) {
+                    key.cancel();
+                    connection.close();
+                    keys.remove();
+                }
+                else if(!connection.isPaused()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    keys.remove();
+                }
+            }
+        }
+
+        public void run() {
+            try {
+                while(!this.closed) {
+                    this.selector.select();
+
+                    SocketChannel channel;
+                    while((channel = this.pendingChannels.poll()) != null) {
+                        channel.register(this.selector, SelectionKey.OP_READ, new InboundConnection(channel, bufferPool.acquire()));
+                    }
+                    if(this.resumeRequested) {
+                        this.resumeRequested = false;
+                        this.resumePaused();
+                    }
+
+                    Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                    while(keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+
+                        if(!key.isValid()) { continue; }
+                        if(key.isAcceptable()) {
+                            accept();
+                        }
+                        else if(key.isReadable()) {
+                            InboundConnection connection = (InboundConnection) key.attachment();
+                            if(!connection.read()) {
+                                key.cancel();
+                                connection.close();    //connection closed by the sender, wait for it to reconnect
+                            }
+                            else if(connection.isPaused()) {
+                                key.interestOps(0); //stop reading until the handler has room, leaving the sender's frames in the socket buffers
+                                this.paused.add(key);
+                            }
+                        }
+                    }
+                }
+            }
+            catch (IOException | ClosedSelectorException e) {
+                e.printStackTrace();
+            }
+            finally {
+                for (SelectionKey key : this.selector.keys()) {
+                    if(key.attachment() instanceof InboundConnection) { ((InboundConnection) key.attachment()).close(); }
+                }
+                try {
+                    this.selector.close();
+                }
+                catch (IOException e) {
+                    e.printStackTrace();
+                }
+                if(this == loops[0] && onClose != null) { onClose.run(); }
+            }
+        }
+    }
+
+    //read side of a single inbound connection: length-prefixed frames accumulated in a buffer until complete
+    private class InboundConnection {
+
+        private SocketChannel channel;
+        private ByteBuffer readBuffer;  //in write mode between reads, holding the start of an incomplete frame
+        private Message pending;    //decoded message the handler had no room for, the frames behind it staying in the buffer (null while reading)
+        private boolean undecodable;    //set on a frame that couldn't be decoded, the connection being closed then
+
+        InboundConnection(SocketChannel channel, ByteBuffer readBuffer) {
+            this.channel = channel;
+            this.readBuffer = readBuffer;
+        }
+
+        //read what is available and dispatch the complete frames, returning false once the sender has closed or sent an undecodable frame
+        boolean read() {
+            int bytesRead;
+            try {
+                bytesRead = this.channel.read(this.readBuffer);
+            }
+            catch (IOException e) {
+                return false;
+            }
+            if(bytesRead < 0) { return false; }
+            bytesReceived.addAndGet(bytesRead);
+            this.dispatch();
+            return !this.undecodable;
+        }
+
+        //hand every complete frame in the buffer to the handler in order, stopping at a message it has no room for
+        private void dispatch() {
+            this.readBuffer.flip();
+            while(this.readBuffer.remaining() >= 4) {
+                int frameLength = this.readBuffer.getInt(this.readBuffer.position());
+                if(this.readBuffer.remaining() < 4 + frameLength) {
+                    if(4 + frameLength > this.readBuffer.capacity()) { this.grow(4 + frameLength); }
+                    break;
+                }
+
+                int frameStart = this.readBuffer.position() + 4;
+                ByteBuffer frame = this.readBuffer.slice(frameStart, frameLength);
+                this.readBuffer.position(frameStart + frameLength);
+                framesReceived.incrementAndGet();
+
+                Message message;
+                try {
+                    message = MessageCodec.decode(frame, null, lastReceivedClocks);
+                }
+                catch (Exception e) {
+                    this.undecodable = true;
+                    fail("undecodable frame of " + frameLength + " bytes from " + this.channel.socket().getRemoteSocketAddress() + ": " + e);
+                    break;
+                }
+                if(!this.handle(message)) {
+                    this.pending = message;
+                    break;
+                }
+            }
+            this.readBuffer.compact();
+        }
+
+        //hand a message to the handler, returning false if it has no room for it yet
+        private boolean handle(Message message) {
+            try {
+                return handler.test(message);
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+                return true;
+            }
+        }
+
+        boolean isPaused() {
+            return this.pending != null;
+        }
+
+        boolean isUndecodable() {
+            return this.undecodable;
+        }
+
+        //hand the pending message to the handler again, then the frames buffered behind it
+        void resume() {
+            if(!this.handle(this.pending)) { return; }
+            this.pending = null;
+            this.dispatch();
+        }
+
+        //replace the pooled buffer by a larger one able to hold a frame of the given size
+        private void grow(int size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(size, this.readBuffer.capacity() * 2));
+            larger.put(this.readBuffer);
+            larger.flip();
+            bufferPool.release(this.readBuffer);
+            this.readBuffer = larger;
+        }
+
+        void close() {
+            try {
+                this.channel.close();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            bufferPool.release(this.readBuffer);
+            this.readBuffer = null;
+            this.pending = null;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//HDR-style histogram of latencies in nanoseconds: log-linear buckets, each power of 2 split in 32 linear sub-buckets,
+//so any value is counted within ~3% of it's magnitude, in fixed memory, and recording is one lock-free increment
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;   //32 sub-buckets per power of 2
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;   //enough for every positive long
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong maximum = new AtomicLong();
+
+    //count a latency, negative values counted as 0
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(index(value));
+        this.count.incrementAndGet();
+        this.total.addAndGet(value);
+        if(value > this.maximum.get()) { this.maximum.accumulateAndGet(value, Math::max); }
+    }
+
+    //bucket of a value: values below 2*SUB_BUCKETS have their own bucket, larger ones keep their top SUB_BUCKET_BITS+1 bits
+    static int index(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    //largest value counted in a bucket
+    static long highestValue(int index) {
+        if(index < 2 * SUB_BUCKETS) { return index; }
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        long subBucket = index - shift * SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getMaximum() {
+        return this.maximum.get();
+    }
+
+    public long getMean() {
+        long count = this.count.get();
+        return count == 0 ? 0 : this.total.get() / count;
+    }
+
+    //latency at the given quantile (Eg: 0.99), within the precision of it's bucket
+    public long getValueAtQuantile(double quantile) {
+        long count = this.count.get();
+        if(count == 0) { return 0; }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if(seen >= rank) { return Math.min(highestValue(i), this.maximum.get()); }
+        }
+        return this.maximum.get();
+    }
+
+    //count, mean, p50, p99, p999 and max in microseconds, Eg: "n=400 mean=610 p50=598 p99=1081 p999=1089 max=1089"
+    public String summary() {
+        return String.format("n=%d mean=%d p50=%d p99=%d p999=%d max=%d", this.getCount(), micros(this.getMean()),
+            micros(this.getValueAtQuantile(0.50)), micros(this.getValueAtQuantile(0.99)), micros(this.getValueAtQuantile(0.999)), micros(this.getMaximum()));
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
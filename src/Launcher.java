@@ -0,0 +1,311 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+//start a cluster of processes on loopback ports, in this JVM or as forked JVMs, drive them with the configured load,
+//and report the time to get ready, throughput, request-to-delivery latency percentiles and whether all processes delivered in the same order
+//usage: java Launcher [settings.properties] [--key=value ...]
+//launcher settings: processes (4), basePort (4000), fork (false), timeout (seconds, 120), resultsDir (cluster-results)
+//every other setting is a process setting (Eg: messages, rate, window, batch, mode), passed on as a system property
+public class Launcher {
+
+    private static final List<String> LAUNCHER_KEYS = Arrays.asList("processes", "basePort", "fork", "timeout", "resultsDir");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Properties settings = new Properties();
+        for (String arg : args) {
+            if(arg.startsWith("--")) {
+                int equals = arg.indexOf('=');
+                if(equals < 0) {
+                    settings.setProperty(arg.substring(2), "true");
+                }
+                else {
+                    settings.setProperty(arg.substring(2, equals), arg.substring(equals + 1));
+                }
+            }
+            else {
+                //settings file first, so flags given on the command line override it whatever their position
+                Properties file = new Properties();
+                try (InputStream input = new FileInputStream(arg)) {
+                    file.load(input);
+                }
+                for (String key : file.stringPropertyNames()) {
+                    if(!settings.containsKey(key)) { settings.setProperty(key, file.getProperty(key)); }
+                }
+            }
+        }
+
+        int numProcesses = Integer.parseInt(settings.getProperty("processes", "4"));
+        int basePort = Integer.parseInt(settings.getProperty("basePort", "4000"));
+        boolean fork = Boolean.parseBoolean(settings.getProperty("fork", "false"));
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(settings.getProperty("timeout", "120")));
+        File resultsDir = new File(settings.getProperty("resultsDir", "cluster-results"));
+        resultsDir.mkdirs();
+
+        //the launcher compares delivery orders, so it's processes keep them unless told otherwise
+        if(!settings.containsKey("orderHistory")) { settings.setProperty("orderHistory", "true"); }
+
+        //process settings apply to this JVM too, for the processes run in it and to read back the config they use
+        List<String> processSettings = new ArrayList<String>();
+        for (String key : settings.stringPropertyNames()) {
+            if(LAUNCHER_KEYS.contains(key)) { continue; }
+            System.setProperty(key, settings.getProperty(key));
+            processSettings.add("-D" + key + "=" + settings.getProperty(key));
+        }
+        ProcessConfig config = new ProcessConfig();
+
+        PrintStream console = System.out;
+        long start = System.nanoTime();
+        List<NodeReport> reports = fork
+            ? runForked(numProcesses, basePort, processSettings, resultsDir, timeoutMillis)
+            : runInJvm(numProcesses, basePort, config, resultsDir, timeoutMillis);
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+        boolean passed = report(console, numProcesses, fork, config, reports, wallSeconds);
+        Log.flush();
+        System.out.flush();
+        System.exit(passed ? 0 : 1);
+    }
+
+    //run every process in this JVM, with their output logged to resultsDir/cluster.log until the launcher exits
+    private static List<NodeReport> runInJvm(int numProcesses, int basePort, ProcessConfig config, File resultsDir, long timeoutMillis) throws IOException, InterruptedException {
+        System.setOut(new PrintStream(new BufferedOutputStream(new FileOutputStream(new File(resultsDir, "cluster.log"))), false));
+        LocalCluster cluster = new LocalCluster(numProcesses, basePort, config);
+        cluster.awaitDelivery(timeoutMillis);
+
+        List<NodeReport> reports = new ArrayList<NodeReport>();
+        Process[] processes = cluster.getProcesses();
+        for (int i = 0; i < numProcesses; i++) {
+            if(processes[i].isDeliveryComplete()) { reports.add(NodeReport.of(i, processes[i])); }
+        }
+        cluster.shutdown();
+        return reports;
+    }
+
+    //run every process in a JVM of it's own, running Start on loopback, and collect the reports they write once done
+    //the launcher waits for a signal that a report was renamed into place or a child exited, instead of checking every so often
+    private static List<NodeReport> runForked(int numProcesses, int basePort, List<String> processSettings, File resultsDir, long timeoutMillis) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        java.lang.Process[] children = new java.lang.Process[numProcesses];
+        BlockingQueue<Object> signals = new LinkedBlockingQueue<Object>();
+        WatchService watcher = FileSystems.getDefault().newWatchService();
+        resultsDir.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+        Thread watching = new Thread(() -> {
+            try {
+                while(true) {
+                    WatchKey key = watcher.take();
+                    signals.addAll(key.pollEvents());
+                    key.reset();
+                }
+            }
+            catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+        }, "report-watcher");
+        watching.setDaemon(true);
+        watching.start();
+        for (int i = 0; i < numProcesses; i++) {
+            NodeReport.fileOf(resultsDir, i).delete();
+
+            List<String> command = new ArrayList<String>();
+            command.add(java);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.addAll(processSettings);
+            command.add("-DresultsDir=" + resultsDir.getPath());
+            command.addAll(Arrays.asList("Start", String.valueOf(i), String.valueOf(numProcesses), String.valueOf(basePort), "127.0.0.1"));
+
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(new File(resultsDir, "process-" + i + ".log"));
+            children[i] = builder.start();
+            children[i].onExit().thenAccept(signals::add);
+        }
+
+        List<NodeReport> reports = new ArrayList<NodeReport>();
+        try {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while(true) {
+                //done once every process wrote it's report, or the processes without one exited
+                boolean complete = true;
+                boolean waiting = false;
+                for (int i = 0; i < numProcesses; i++) {
+                    boolean reported = NodeReport.fileOf(resultsDir, i).exists();
+                    complete &= reported;
+                    waiting |= !reported && children[i].isAlive();
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if(complete || !waiting || remaining <= 0) { break; }
+
+                signals.poll(remaining, TimeUnit.MILLISECONDS);
+            }
+
+            for (int i = 0; i < numProcesses; i++) {
+                File file = NodeReport.fileOf(resultsDir, i);
+                if(file.exists()) { reports.add(NodeReport.readFrom(file)); }
+            }
+        }
+        finally {
+            watcher.close();
+            for (java.lang.Process child : children) {
+                child.destroy();
+            }
+        }
+        return reports;
+    }
+
+    //print the summary of the run, returning whether every process delivered every message in the required order
+    private static boolean report(PrintStream console, int numProcesses, boolean fork, ProcessConfig config, List<NodeReport> reports, double wallSeconds) {
+        console.println(String.format("Cluster of %d processes (%s), %d requests each, %s, %s mode%s",
+            numProcesses, fork ? "forked JVMs" : "one JVM", config.messages,
+            config.rate > 0 ? config.rate + " requests/s per process" : "random (0,10] ms between requests",
+            config.causalMode ? "causal" : "sequencer", config.causalMode ? "" : " with " + config.sequencers + " sequencers"));
+
+        if(reports.size() < numProcesses) {
+            console.println(String.format("Only %d of %d processes delivered every message within %.1f s", reports.size(), numProcesses, wallSeconds));
+            return false;
+        }
+
+        //latencies compare System.nanoTime() of the requesting and delivering processes, which share the host's monotonic clock
+        long lastCreated = Long.MIN_VALUE;
+        long lastReady = Long.MIN_VALUE;
+        long readyTime = 0;
+        long deliveryTime = 0;
+        int delivered = 0;
+        for (NodeReport report : reports) {
+            lastCreated = Math.max(lastCreated, report.createdTime);
+            lastReady = Math.max(lastReady, report.createdTime + report.readyTimeNanos);
+            readyTime = Math.max(readyTime, report.readyTimeNanos);
+            deliveryTime = Math.max(deliveryTime, report.deliveryTimeNanos);
+            delivered += report.latencies.length;
+        }
+        long[] latencies = new long[delivered];
+        int position = 0;
+        for (NodeReport report : reports) {
+            System.arraycopy(report.latencies, 0, latencies, position, report.latencies.length);
+            position += report.latencies.length;
+        }
+        Arrays.sort(latencies);
+
+        //the bootstrap itself runs from the start of the last process, until the last one is connected to all others and knows the leader
+        console.println(String.format("Cluster ready in %.1f ms after the last process started (slowest process ready %.1f ms after it's own start)",
+            (lastReady - lastCreated) / 1e6, readyTime / 1e6));
+
+        double seconds = deliveryTime / 1e9;
+        int requests = numProcesses * config.messages;
+        if(!config.orderHistory) {
+            //processes only counted their deliveries, so there is no order or latency of each message to compare
+            console.println(String.format("Throughput: %d requests delivered to %d processes in %.3f s, %.1f requests/s, %.1f deliveries/s (without order history)",
+                requests, numProcesses, seconds, requests / seconds, (double) requests * numProcesses / seconds));
+            return true;
+        }
+        console.println(String.format("Throughput: %d requests delivered to %d processes in %.3f s, %.1f requests/s, %.1f deliveries/s",
+            requests, numProcesses, seconds, requests / seconds, delivered / seconds));
+        console.println(String.format("Request-to-delivery latency: p50 %d us, p99 %d us, p999 %d us, max %d us",
+            percentileMicros(latencies, 0.50), percentileMicros(latencies, 0.99), percentileMicros(latencies, 0.999), percentileMicros(latencies, 1.0)));
+        console.println("p99 latency of each sender's requests: " + senderPercentiles(numProcesses, reports, 0.99));
+
+        boolean sameOrder = true;
+        boolean sameGroupOrder = true;
+        NodeReport first = reports.get(0);
+        for (NodeReport report : reports) {
+            sameOrder &= report.messagesOrder.equals(first.messagesOrder);
+            sameGroupOrder &= report.groupOrders.equals(first.groupOrders);
+        }
+        console.println("Identical delivery order on every process: " + sameOrder);
+        if(config.causalMode) {
+            //causal order lets concurrent broadcasts be delivered in different orders, as long as none is delivered before one it depends on
+            boolean causalOrder = true;
+            for (NodeReport report : reports) {
+                causalOrder &= respectsCausalOrder(numProcesses, report.messagesOrder, reports);
+            }
+            console.println("Causal delivery order on every process: " + causalOrder);
+            return causalOrder;
+        }
+        console.println("Identical order of every group on every process: " + sameGroupOrder);
+        return config.sequencers == 1 ? sameOrder : sameGroupOrder;
+    }
+
+    //whether a delivery order respects happened-before: the n-th broadcast of a sender, whose message ID is n*numProcesses + sender,
+    //comes right after the sender's earlier ones, and after as many broadcasts of every other process as it's timestamp counts
+    //(the timestamps are reported by the senders, each process counting it's own broadcasts as delivered when it sends them)
+    private static boolean respectsCausalOrder(int numProcesses, List<Integer> order, List<NodeReport> reports) {
+        List<List<int[]>> sentClocks = new ArrayList<List<int[]>>();
+        for (int sender = 0; sender < numProcesses; sender++) {
+            sentClocks.add(new ArrayList<int[]>());
+        }
+        for (NodeReport report : reports) {
+            sentClocks.set(report.processId, report.sentClocks);
+        }
+
+        int[] delivered = new int[numProcesses];
+        for (int mid : order) {
+            int sender = mid % numProcesses;
+            int n = mid / numProcesses;
+            if(n < 1 || n > sentClocks.get(sender).size()) { return false; }
+            int[] clock = sentClocks.get(sender).get(n - 1);
+            for (int i = 0; i < numProcesses; i++) {
+                if(i == sender ? delivered[i] != clock[i] - 1 : delivered[i] < clock[i]) { return false; }
+            }
+            delivered[sender]++;
+        }
+        return true;
+    }
+
+    //latency at the given quantile of the requests of each sender, delivered at every process, and the spread between the worst and best sender
+    //Eg: "0: 812 us, 1: 1530 us, 2: 1498 us, 3: 1611 us (worst/best 1.98)"
+    private static String senderPercentiles(int numProcesses, List<NodeReport> reports, double quantile) {
+        long[][] latencies = new long[numProcesses][];
+        int[] counts = new int[numProcesses];
+        for (int sender = 0; sender < numProcesses; sender++) {
+            latencies[sender] = new long[16];
+        }
+        for (NodeReport report : reports) {
+            for (int i = 0; i < report.latencies.length; i++) {
+                int sender = report.messagesOrder.get(i) % numProcesses;    //message IDs end in their requester's ID
+                if(counts[sender] == latencies[sender].length) { latencies[sender] = Arrays.copyOf(latencies[sender], counts[sender] * 2); }
+                latencies[sender][counts[sender]++] = report.latencies[i];
+            }
+        }
+
+        StringBuilder line = new StringBuilder();
+        long worst = 0;
+        long best = Long.MAX_VALUE;
+        for (int sender = 0; sender < numProcesses; sender++) {
+            long[] senderLatencies = Arrays.copyOf(latencies[sender], counts[sender]);
+            Arrays.sort(senderLatencies);
+            long percentile = percentileMicros(senderLatencies, quantile);
+            if(counts[sender] > 0) {
+                worst = Math.max(worst, percentile);
+                best = Math.min(best, percentile);
+            }
+            if(line.length() > 0) { line.append(", "); }
+            line.append(sender).append(": ").append(percentile).append(" us");
+        }
+        if(worst > 0) { line.append(String.format(" (worst/best %.2f)", (double) worst / Math.max(1, best))); }
+        return line.toString();
+    }
+
+    //latency at the given quantile of the sorted latencies, in microseconds
+    private static long percentileMicros(long[] sortedLatencies, double quantile) {
+        if(sortedLatencies.length == 0) { return 0; }
+        int index = (int) Math.ceil(quantile * sortedLatencies.length) - 1;
+        return TimeUnit.NANOSECONDS.toMicros(sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))]);
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+import java.util.List;
+
+//a cluster of processes on consecutive loopback ports, all running inside this JVM
+public class LocalCluster {
+
+    private Process[] processes;
+
+    //create every process and start establishing it's connections on it's own thread
+    public LocalCluster(int numProcesses, int basePort, ProcessConfig config) {
+        List<ConnectingProcess> connectingProcessList = loopbackProcessList(numProcesses, basePort);
+
+        this.processes = new Process[numProcesses];
+        for (int i = 0; i < numProcesses; i++) {
+            Process process = new Process(i, numProcesses, connectingProcessList, config);
+            this.processes[i] = process;
+            Thread starter = new Thread(() -> {
+                try {
+                    process.establishConnections();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }, "starter-" + i);
+            starter.start();
+        }
+    }
+
+    //connection information of numProcesses processes listening on 127.0.0.1, from basePort on
+    public static List<ConnectingProcess> loopbackProcessList(int numProcesses, int basePort) {
+        List<ConnectingProcess> connectingProcessList = new ArrayList<ConnectingProcess>();
+        for (int i = 0; i < numProcesses; i++) {
+            connectingProcessList.add(new ConnectingProcess("127.0.0.1", basePort + i));
+        }
+        return connectingProcessList;
+    }
+
+    public Process[] getProcesses() {
+        return this.processes;
+    }
+
+    //wait until every process delivered every message, returning false if timeoutMillis passed first
+    public boolean awaitDelivery(long timeoutMillis) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        for (Process process : this.processes) {
+            long remaining = timeoutMillis - (System.currentTimeMillis() - start);
+            if(!process.awaitDelivery(Math.max(0, remaining))) { return false; }
+        }
+        return true;
+    }
+
+    //stop every process, closing all connections
+    public void shutdown() {
+        for (Process process : this.processes) {
+            process.shutdown();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+//level-gated, asynchronous event log shared by every process of the JVM, set with -DlogLevel=off|error|info|debug (info by default)
+//levels are static final flags, so the JIT removes a call site guarded by a disabled one, Eg: if(Log.DEBUG) { Log.event(...); }
+//events are copied into a preallocated ring as a code and a few numbers, and formatted and printed by a writer thread,
+//so the threads receiving and delivering messages never format text or wait on the stdout lock
+//when the ring is full, per-message debug events are dropped (and their num printed), while error and info lines wait for room,
+//so failures are never lost under the load that causes them
+public final class Log {
+
+    public static final int LEVEL = level(System.getProperty("logLevel", "info"));
+    public static final boolean ERROR = LEVEL >= 1; //failures
+    public static final boolean INFO = LEVEL >= 2;  //elections, reports and statistics
+    public static final boolean DEBUG = LEVEL >= 3; //an event per message sent, received, held back, delivered and acknowledged
+
+    //event codes, with the format of each one: processId, then the event's numbers a and b
+    public static final int TEXT = 0;
+    public static final int REQUESTED = 1;
+    public static final int SENT_APPLICATION = 2;
+    public static final int SENT_CAUSAL = 3;
+    public static final int RECEIVED = 4;
+    public static final int HELD_BACK = 5;
+    public static final int DUPLICATE = 6;
+    public static final int DELIVERED = 7;
+    public static final int SENT_ACKNOWLEDGEMENT = 8;
+    private static final String[] FORMATS = {
+        null,   //text events are printed as they are
+        "process %d requested %d (group %d)",
+        "process %d sent application %d (seq %d)",
+        "process %d sent causal broadcast %d",
+        "process %d received %d (seq %d)",
+        "process %d held back %d (seq %d)",
+        "process %d dropped duplicate %d (seq %d)",
+        "process %d delivered %d (seq %d)",
+        "process %d acknowledged up to %d to process %d",
+    };
+
+    private static final int CAPACITY = 1 << 16;    //num of events the ring holds (power of 2)
+    private static final int[] codes = new int[CAPACITY];
+    private static final int[] processIds = new int[CAPACITY];
+    private static final long[] as = new long[CAPACITY];
+    private static final long[] bs = new long[CAPACITY];
+    private static final Object[] texts = new Object[CAPACITY];
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);    //position of the event in each slot, once fully written
+    private static final AtomicLong claimed = new AtomicLong(); //position of the next event to be written
+    private static volatile long consumed;  //position of the next event to be printed
+    private static final AtomicLong dropped = new AtomicLong(); //num of events dropped on a full ring
+    private static Thread writer;
+
+    private Log() {}
+
+    private static int level(String name) {
+        switch (name.toLowerCase()) {
+            case "off": return 0;
+            case "error": return 1;
+            case "info": return 2;
+            case "debug": return 3;
+            default: throw new IllegalArgumentException("no such log level " + name);
+        }
+    }
+
+    //log a line of text at info level
+    public static void info(String text) {
+        if(INFO) { append(TEXT, -1, 0, 0, text, true); }
+    }
+
+    //log a line of text at error level
+    public static void error(String text) {
+        if(ERROR) { append(TEXT, -1, 0, 0, text, true); }
+    }
+
+    //log a per-message event, callers check the level first so that disabled events cost nothing
+    public static void event(int code, int processId, long a, long b) {
+        append(code, processId, a, b, null, false);
+    }
+
+    //claim the next slot of the ring, waiting for the writer to make room when wait is set, or dropping the event otherwise
+    private static void append(int code, int processId, long a, long b, String text, boolean wait) {
+        long position;
+        while(true) {
+            position = claimed.get();
+            if(position - consumed < CAPACITY) {
+                if(claimed.compareAndSet(position, position + 1)) { break; }
+                continue;
+            }
+            if(!wait) {
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+
+        int slot = (int) (position & (CAPACITY - 1));
+        codes[slot] = code;
+        processIds[slot] = processId;
+        as[slot] = a;
+        bs[slot] = b;
+        texts[slot] = text;
+        published.lazySet(slot, position + 1);  //0 stands for a slot never written
+
+        if(writer == null) { startWriter(); }
+    }
+
+    private static synchronized void startWriter() {
+        if(writer != null) { return; }
+        writer = new Thread(Log::runWriter, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush));
+    }
+
+    //print events in the order their positions were claimed
+    private static void runWriter() {
+        while(true) {
+            if(!drain()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+
+    //print every event published so far, returning false if there was none
+    private static synchronized boolean drain() {
+        long position = consumed;
+        if(published.get((int) (position & (CAPACITY - 1))) != position + 1) { return false; }
+
+        StringBuilder lines = new StringBuilder();
+        long lost = dropped.getAndSet(0);
+        if(lost > 0) { lines.append("log dropped ").append(lost).append(" events\n"); }
+        int slot;
+        while(published.get(slot = (int) (position & (CAPACITY - 1))) == position + 1) {
+            int code = codes[slot];
+            lines.append(code == TEXT ? (String) texts[slot] : String.format(FORMATS[code], processIds[slot], as[slot], bs[slot])).append('\n');
+            texts[slot] = null;
+            position++;
+            consumed = position;
+        }
+        System.out.print(lines);
+        System.out.flush();
+        return true;
+    }
+
+    //print every event published so far, Eg: before the JVM exits
+    public static void flush() {
+        while(drain()) {
+            //more events may have been published while printing
+        }
+    }
+}
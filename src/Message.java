@@ -1,13 +1,18 @@
-import java.io.Serializable;
-
 //class to store the messages transfered
-public class Message implements Serializable {
+public class Message {
     
     String type;    //Eg: INTRODUCTION, ACKNOWLEDGEMENT, CONNECTIONS, START, APPLICATION
     int senderProcessId;    //process ID of sender
     int receiverProcessId;  //process ID of receiver
     int[] clock;    //timestamp of message sender
     int mid;    //message ID
+    int seq;    //global sequence number assigned by the leader to APPLICATION broadcasts (0 when not sequenced)
+                //for APPLICATION_ACK and REQ_MASTER, the cumulative acknowledgement of every broadcast delivered up to seq
+                //for NACK, the first of the missing broadcasts, the last one being in mid
+    int group;  //partition key of a request, totally ordered by the sequencer owning it's group
+    int stable; //for APPLICATION, the sequence number up to which every process delivered the sequencer's broadcasts, so they can be pruned
+    Message[] batch;    //requests carried, in order, by a batched APPLICATION broadcast (null when not batched)
+    long timestamp; //System.nanoTime() of the sender when the message was requested, for request-to-delivery latency
 
     //constructor
     public Message(String type, int senderProcessId, int receiverProcessId, int[] clock, int id) {
@@ -18,4 +23,9 @@ public class Message implements Serializable {
         this.mid = id;
     }
 
+    //return the requests carried by this message, in delivery order
+    public Message[] getEntries() {
+        return this.batch != null ? this.batch : new Message[] {this};
+    }
+
 }
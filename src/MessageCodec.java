@@ -0,0 +1,336 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//hand-written binary encoding of a Message, used on the wire instead of java serialization
+//layout: [type tag][varint senderProcessId][varint receiverProcessId][varint mid][varint seq][varint group][varint stable][varlong timestamp][varint clock header][clock entries][varint batch length+1][encoded batch entries]
+public class MessageCodec {
+
+    //one byte tag per message type, instead of sending the type string
+    public static final byte INTRODUCTION = 1;
+    public static final byte ACKNOWLEDGEMENT = 2;
+    public static final byte CONNECTION = 3;
+    public static final byte LEADER = 4;
+    public static final byte APPLICATION = 5;
+    public static final byte REQ_MASTER = 6;
+    public static final byte APPLICATION_ACK = 7;
+    public static final byte NACK = 8;
+
+    //type string of each tag, indexed by tag
+    private static final String[] TYPES = {null, "INTRODUCTION", "ACKNOWLEDGEMENT", "CONNECTION", "LEADER", "APPLICATION", "REQ_MASTER", "APPLICATION_ACK", "NACK"};
+
+    //return the tag of a message type
+    public static byte typeTag(String type) {
+        switch (type) {
+            case "INTRODUCTION": return INTRODUCTION;
+            case "ACKNOWLEDGEMENT": return ACKNOWLEDGEMENT;
+            case "CONNECTION": return CONNECTION;
+            case "LEADER": return LEADER;
+            case "APPLICATION": return APPLICATION;
+            case "REQ_MASTER": return REQ_MASTER;
+            case "APPLICATION_ACK": return APPLICATION_ACK;
+            case "NACK": return NACK;
+            default: throw new IllegalArgumentException("no such acceptable message type " + type);
+        }
+    }
+
+    //return the message type of a tag
+    public static String typeName(byte tag) {
+        if(tag <= 0 || tag >= TYPES.length) {
+            throw new IllegalArgumentException("no such acceptable message tag " + tag);
+        }
+        return TYPES[tag];
+    }
+
+    //exact num of bytes the message takes once encoded with full clocks
+    public static int encodedSize(Message message) {
+        int size = 1 + varIntSize(message.senderProcessId) + varIntSize(message.receiverProcessId) + varIntSize(message.mid) + varIntSize(message.seq) + varIntSize(message.group) + varIntSize(message.stable) + varLongSize(message.timestamp);
+        if(message.clock == null) {
+            size += 1;
+        }
+        else {
+            size += varIntSize((message.clock.length + 1) << 1);
+            for (int i = 0; i < message.clock.length; i++) {
+                size += varIntSize(message.clock[i]);
+            }
+        }
+
+        if(message.batch == null) {
+            return size + 1;
+        }
+        size += varIntSize(message.batch.length + 1);
+        for (int i = 0; i < message.batch.length; i++) {
+            size += encodedSize(message.batch[i]);
+        }
+        return size;
+    }
+
+    //upper bound of the num of bytes the message takes once encoded, whichever way it's clocks are encoded
+    public static int maximumEncodedSize(Message message) {
+        int size = 1 + 6 * 5 + 10 + 5;
+        if(message.clock != null) {
+            size += 10 * message.clock.length;
+        }
+        size += 5;
+        if(message.batch != null) {
+            for (int i = 0; i < message.batch.length; i++) {
+                size += maximumEncodedSize(message.batch[i]);
+            }
+        }
+        return size;
+    }
+
+    //encode the message into a new array sized to fit exactly
+    public static byte[] encode(Message message) {
+        byte[] bytes = new byte[encodedSize(message)];
+        encode(message, ByteBuffer.wrap(bytes), null);
+        return bytes;
+    }
+
+    //encode the message for a single receiver, sending only the clock entries that changed since the last clock sent to it
+    //lastSentClock is the sender's state of that channel, updated in place
+    public static byte[] encode(Message message, int[] lastSentClock) {
+        ByteBuffer buffer = ByteBuffer.allocate(maximumEncodedSize(message));
+        encode(message, buffer, lastSentClock);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    //encode the message at the position of the buffer, which must have encodedSize bytes remaining
+    public static void encode(Message message, ByteBuffer buffer) {
+        encode(message, buffer, null);
+    }
+
+    //encode the message at the position of the buffer, with differential clocks when lastSentClock is given
+    public static void encode(Message message, ByteBuffer buffer, int[] lastSentClock) {
+        buffer.put(typeTag(message.type));
+        putVarInt(buffer, message.senderProcessId);
+        putVarInt(buffer, message.receiverProcessId);
+        putVarInt(buffer, message.mid);
+        putVarInt(buffer, message.seq);
+        putVarInt(buffer, message.group);
+        putVarInt(buffer, message.stable);
+        putVarLong(buffer, message.timestamp);
+
+        putClock(buffer, message.clock, lastSentClock);
+
+        //length is shifted by one so that 0 stands for a message without a batch
+        if(message.batch == null) {
+            putVarInt(buffer, 0);
+            return;
+        }
+        putVarInt(buffer, message.batch.length + 1);
+        for (int i = 0; i < message.batch.length; i++) {
+            encode(message.batch[i], buffer, lastSentClock);
+        }
+    }
+
+    //write a clock, after a header telling how: 0 = no clock, (length+1)<<1 = every entry, (changed entries<<1)|1 = (index, value) pairs
+    //of the entries that differ from the last clock sent on the channel (Singhal-Kshemkalyani)
+    private static void putClock(ByteBuffer buffer, int[] clock, int[] lastSentClock) {
+        if(clock == null) {
+            putVarInt(buffer, 0);
+            return;
+        }
+
+        if(lastSentClock != null && lastSentClock.length == clock.length) {
+            int changed = 0;
+            for (int i = 0; i < clock.length; i++) {
+                if(clock[i] != lastSentClock[i]) { changed++; }
+            }
+
+            //fall back to every entry once pairs would not be smaller
+            if(changed * 2 < clock.length) {
+                putVarInt(buffer, (changed << 1) | 1);
+                for (int i = 0; i < clock.length; i++) {
+                    if(clock[i] != lastSentClock[i]) {
+                        putVarInt(buffer, i);
+                        putVarInt(buffer, clock[i]);
+                        lastSentClock[i] = clock[i];
+                    }
+                }
+                return;
+            }
+            System.arraycopy(clock, 0, lastSentClock, 0, clock.length);
+        }
+
+        putVarInt(buffer, (clock.length + 1) << 1);
+        for (int i = 0; i < clock.length; i++) {
+            putVarInt(buffer, clock[i]);
+        }
+    }
+
+    //decode a message from the position of the buffer
+    //when reuse is given it's fields, and it's clock if the length matches, are overwritten instead of allocating new ones
+    //batch entries are always decoded into new messages, since they outlive the frame
+    public static Message decode(ByteBuffer buffer, Message reuse) {
+        return decode(buffer, reuse, (int[][]) null);
+    }
+
+    //decode a message, rebuilding differential clocks from the last clock received from it's sender
+    //lastReceivedClocks holds the receiver's state of each channel, indexed by sender and updated in place
+    public static Message decode(ByteBuffer buffer, Message reuse, int[][] lastReceivedClocks) {
+        int position = buffer.position();
+        try {
+            //the sender follows the type tag, and picks the channel state used by the message and all it's batch entries
+            buffer.get();
+            int senderProcessId = getVarInt(buffer);
+            buffer.position(position);
+
+            int[] lastReceivedClock = null;
+            if(lastReceivedClocks != null && senderProcessId < lastReceivedClocks.length) {
+                lastReceivedClock = lastReceivedClocks[senderProcessId];
+            }
+            return decodeMessage(buffer, reuse, lastReceivedClock);
+        }
+        catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated message frame", e);
+        }
+    }
+
+    private static Message decodeMessage(ByteBuffer buffer, Message reuse, int[] lastReceivedClock) {
+        try {
+            String type = typeName(buffer.get());
+            int senderProcessId = getVarInt(buffer);
+            int receiverProcessId = getVarInt(buffer);
+            int mid = getVarInt(buffer);
+            int seq = getVarInt(buffer);
+            int group = getVarInt(buffer);
+            int stable = getVarInt(buffer);
+            long timestamp = getVarLong(buffer);
+
+            int[] clock = getClock(buffer, reuse != null ? reuse.clock : null, lastReceivedClock);
+
+            int batchLength = getVarInt(buffer) - 1;
+            Message[] batch = null;
+            if(batchLength >= 0) {
+                batch = new Message[batchLength];
+                for (int i = 0; i < batchLength; i++) {
+                    batch[i] = decodeMessage(buffer, null, lastReceivedClock);
+                }
+            }
+
+            if(reuse == null) {
+                Message message = new Message(type, senderProcessId, receiverProcessId, clock, mid);
+                message.seq = seq;
+                message.group = group;
+                message.stable = stable;
+                message.timestamp = timestamp;
+                message.batch = batch;
+                return message;
+            }
+            reuse.type = type;
+            reuse.senderProcessId = senderProcessId;
+            reuse.receiverProcessId = receiverProcessId;
+            reuse.clock = clock;
+            reuse.mid = mid;
+            reuse.seq = seq;
+            reuse.group = group;
+            reuse.stable = stable;
+            reuse.timestamp = timestamp;
+            reuse.batch = batch;
+            return reuse;
+        }
+        catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated message frame", e);
+        }
+    }
+
+    //read a clock written by putClock, into reusableClock when it has the right length
+    private static int[] getClock(ByteBuffer buffer, int[] reusableClock, int[] lastReceivedClock) {
+        int header = getVarInt(buffer);
+        if(header == 0) {
+            return null;
+        }
+
+        if((header & 1) == 1) {
+            if(lastReceivedClock == null) {
+                throw new IllegalArgumentException("differential clock without channel state");
+            }
+            int changed = header >>> 1;
+            for (int i = 0; i < changed; i++) {
+                int index = getVarInt(buffer);
+                if(index < 0 || index >= lastReceivedClock.length) {
+                    throw new IllegalArgumentException("differential clock entry " + index + " out of " + lastReceivedClock.length + " processes");
+                }
+                lastReceivedClock[index] = getVarInt(buffer);
+            }
+            int[] clock = (reusableClock != null && reusableClock.length == lastReceivedClock.length) ? reusableClock : new int[lastReceivedClock.length];
+            System.arraycopy(lastReceivedClock, 0, clock, 0, clock.length);
+            return clock;
+        }
+
+        int clockLength = (header >>> 1) - 1;
+        int[] clock = (reusableClock != null && reusableClock.length == clockLength) ? reusableClock : new int[clockLength];
+        for (int i = 0; i < clockLength; i++) {
+            clock[i] = getVarInt(buffer);
+        }
+        if(lastReceivedClock != null && lastReceivedClock.length == clockLength) {
+            System.arraycopy(clock, 0, lastReceivedClock, 0, clockLength);
+        }
+        return clock;
+    }
+
+    //num of bytes taken by an unsigned LEB128 varint
+    public static int varIntSize(int value) {
+        int size = 1;
+        while((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    //num of bytes taken by an unsigned LEB128 varlong
+    public static int varLongSize(long value) {
+        int size = 1;
+        while((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    //write an unsigned LEB128 varint, 7 bits per byte with the high bit marking continuation
+    public static void putVarInt(ByteBuffer buffer, int value) {
+        while((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    //write an unsigned LEB128 varlong
+    public static void putVarLong(ByteBuffer buffer, long value) {
+        while((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    //read an unsigned LEB128 varlong
+    public static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varlong");
+    }
+
+    //read an unsigned LEB128 varint
+    public static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+}
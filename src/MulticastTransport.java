@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+//transport sending sequenced APPLICATION broadcasts once over UDP multicast, and every other message over the TCP transport it wraps,
+//so a sequencer's egress per broadcast stays the same however many processes receive it
+//receivers detect gaps in the sequence numbers of each sequencer and ask for the missing broadcasts with a NACK over TCP,
+//which the sequencer answers over TCP from a bounded buffer of it's latest broadcasts; the buffer holds at least a window,
+//and a broadcast not yet delivered everywhere is always within the last window sent, since the window only moves on acknowledgements
+//while some process hasn't acknowledged it's latest broadcast, an idle sequencer multicasts it again every repair interval,
+//so a lost last broadcast is detected as a gap too
+public class MulticastTransport implements Transport {
+
+    private static final int MAXIMUM_DATAGRAM = 65507;  //larger broadcasts go over TCP
+
+    private int processId;
+    private int numProcesses;
+    private TcpTransport tcpTransport;  //every message but sequenced broadcasts, NACKs and retransmissions
+    private InetSocketAddress group;    //multicast group and port
+    private NetworkInterface networkInterface;  //interface the group is joined and sent on
+    private ScheduledExecutorService timer; //runs the repair checks
+    private long repairIntervalMillis;
+    private double loss;    //fraction of received datagrams dropped on purpose, to exercise repair
+
+    private DatagramChannel sendChannel;
+    private DatagramChannel receiveChannel;
+    private BufferPool framePool = new BufferPool(MAXIMUM_DATAGRAM + 4);
+    private Thread receiverThread;
+
+    //sequencer
+    private Message[] retransmitBuffer; //latest broadcasts, indexed by seq modulo capacity
+    private int latestSeq;  //seq of the latest broadcast multicast
+    private long lastMulticastTime; //System.nanoTime() the latest datagram was sent at
+    private int[] acknowledgedUpTo; //highest seq of this sequencer acknowledged by each process
+
+    //receiver
+    private int[] highestReceived;  //highest seq received from each sequencer, every earlier one being received or NACKed
+
+    private volatile long datagramsSent;
+    private volatile long bytesMulticast;
+    private volatile long nacksSent;
+    private volatile long retransmissions;
+    private volatile long unrepairable; //NACKed broadcasts no longer buffered
+
+    //constructor
+    public MulticastTransport(int processId, List<ConnectingProcess> connectingProcessList, TcpTransport tcpTransport, ScheduledExecutorService timer,
+            ProcessConfig config) throws IOException {
+        this.processId = processId;
+        this.numProcesses = connectingProcessList.size();
+        this.tcpTransport = tcpTransport;
+        this.timer = timer;
+        this.repairIntervalMillis = config.multicastRepairIntervalMillis;
+        this.loss = config.multicastLoss;
+
+        //processes of a cluster share the group and port, which default to the TCP port of process 0, so clusters on one host don't mix
+        int port = config.multicastPort > 0 ? config.multicastPort : connectingProcessList.get(0).port;
+        this.group = new InetSocketAddress(InetAddress.getByName(config.multicastGroup), port);
+        this.networkInterface = config.multicastInterface != null
+            ? NetworkInterface.getByName(config.multicastInterface)
+            : NetworkInterface.getByInetAddress(InetAddress.getByName(connectingProcessList.get(processId).IP));
+        if(this.networkInterface == null) { throw new IOException("no network interface to multicast on"); }
+
+        int capacity = Integer.highestOneBit(Math.max(config.multicastRetransmit, config.windowSize * 2) - 1) << 1;
+        this.retransmitBuffer = new Message[capacity];
+        this.acknowledgedUpTo = new int[this.numProcesses];
+        this.highestReceived = new int[this.numProcesses];
+    }
+
+    //join the group and start receiving from it, then start the TCP transport
+    public void start(Predicate<Message> handler, Runnable onClose) throws IOException {
+        this.receiveChannel = DatagramChannel.open(StandardProtocolFamily.INET)
+            .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+            .setOption(StandardSocketOptions.SO_RCVBUF, 4 << 20)
+            .bind(new InetSocketAddress(this.group.getPort()));
+        this.receiveChannel.join(this.group.getAddress(), this.networkInterface);
+        this.sendChannel = DatagramChannel.open(StandardProtocolFamily.INET)
+            .setOption(StandardSocketOptions.IP_MULTICAST_IF, this.networkInterface)
+            .setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+
+        this.receiverThread = new Thread(() -> this.runReceiver(handler), "multicast-" + this.processId);
+        this.receiverThread.setDaemon(true);
+        this.receiverThread.start();
+        this.timer.scheduleAtFixedRate(this::repair, this.repairIntervalMillis, this.repairIntervalMillis, TimeUnit.MILLISECONDS);
+
+        this.tcpTransport.start(message -> this.receiveUnicast(message, handler), onClose);
+        Log.info("process " + this.processId + " multicasting broadcasts to " + this.group + " on " + this.networkInterface.getName());
+    }
+
+    //wake up the receiving thread waiting to hand a broadcast over again, and read from the paused connections again
+    public void resumeReceiving() {
+        LockSupport.unpark(this.receiverThread);
+        this.tcpTransport.resumeReceiving();
+    }
+
+    public void send(Message message, int receiverProcessId) {
+        this.tcpTransport.send(message, receiverProcessId);
+    }
+
+    //multicast sequenced broadcasts that fit a datagram, keeping them for retransmission, and send everything else over TCP
+    //causal broadcasts carry no sequence number to detect gaps with, so they stay on TCP too
+    public void broadcast(Message message) {
+        if(!"APPLICATION".equals(message.type) || message.seq == 0 || MessageCodec.maximumEncodedSize(message) > MAXIMUM_DATAGRAM) {
+            this.tcpTransport.broadcast(message);
+            return;
+        }
+        synchronized(this) {
+            this.retransmitBuffer[message.seq & (this.retransmitBuffer.length - 1)] = message;
+            this.latestSeq = Math.max(this.latestSeq, message.seq);
+            this.multicast(message);
+        }
+    }
+
+    //send a message to the group in a single datagram, encoded once
+    private synchronized void multicast(Message message) {
+        Frame frame = Frame.encode(message, this.framePool, null);
+        ByteBuffer datagram = frame.view();
+        datagram.position(4);   //datagrams keep their own boundaries, without a length prefix
+        try {
+            this.bytesMulticast += this.sendChannel.send(datagram, this.group);
+            this.datagramsSent++;
+            this.lastMulticastTime = System.nanoTime();
+        }
+        catch (IOException e) {
+            Log.error("couldn't multicast broadcast " + message.seq + ": " + e);   //repaired as a lost datagram
+        }
+        frame.release();
+    }
+
+    //receive broadcasts from the group, NACKing the gaps before each one
+    //while the handler has no room for a broadcast, the receiving thread waits for resumeReceiving, datagrams beyond the socket buffer being lost and repaired
+    private void runReceiver(Predicate<Message> handler) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAXIMUM_DATAGRAM);
+        while(true) {
+            try {
+                buffer.clear();
+                this.receiveChannel.receive(buffer);
+                buffer.flip();
+                if(this.loss > 0 && ThreadLocalRandom.current().nextDouble() < this.loss) { continue; }
+
+                Message message = MessageCodec.decode(buffer, null);
+                int sequencer = message.senderProcessId;
+                if(sequencer == this.processId || sequencer >= this.numProcesses) { continue; }  //own datagrams come back over loopback
+
+                if(message.seq > this.highestReceived[sequencer] + 1) {
+                    this.sendNack(sequencer, this.highestReceived[sequencer] + 1, message.seq - 1);
+                }
+                this.highestReceived[sequencer] = Math.max(this.highestReceived[sequencer], message.seq);
+                while(!handler.test(message)) {
+                    if(!this.receiveChannel.isOpen()) { return; }
+                    LockSupport.park(this);
+                }
+            }
+            catch (ClosedChannelException e) {
+                return;
+            }
+            catch (IOException | IllegalArgumentException e) {
+                Log.error("couldn't receive a multicast datagram: " + e);
+            }
+        }
+    }
+
+    //ask the sequencer for the broadcasts from first to last over TCP, which doesn't lose the request or the answer
+    private void sendNack(int sequencer, int first, int last) {
+        Message nack = new Message("NACK", this.processId, sequencer, null, last);
+        nack.seq = first;
+        this.tcpTransport.send(nack, sequencer);
+        this.nacksSent++;
+    }
+
+    //answer NACKs, and note acknowledgements of this sequencer's broadcasts, before handing every other message to the process
+    private boolean receiveUnicast(Message message, Predicate<Message> handler) {
+        if("NACK".equals(message.type)) {
+            this.retransmit(message.senderProcessId, message.seq, message.mid);
+            return true;
+        }
+        if(("APPLICATION_ACK".equals(message.type) || "REQ_MASTER".equals(message.type)) && message.receiverProcessId == this.processId && message.seq > 0) {
+            synchronized(this) {
+                this.acknowledgedUpTo[message.senderProcessId] = Math.max(this.acknowledgedUpTo[message.senderProcessId], message.seq);
+            }
+        }
+        return handler.test(message);
+    }
+
+    private synchronized void retransmit(int receiverProcessId, int first, int last) {
+        for (int seq = first; seq <= last; seq++) {
+            Message message = this.retransmitBuffer[seq & (this.retransmitBuffer.length - 1)];
+            if(message == null || message.seq != seq) {
+                this.unrepairable++;
+                Log.error("process " + receiverProcessId + " asked for broadcast " + seq + ", no longer buffered");
+                continue;
+            }
+            this.tcpTransport.send(message, receiverProcessId);
+            this.retransmissions++;
+        }
+    }
+
+    //multicast the latest broadcast again if the sequencer went idle before every process acknowledged it
+    private synchronized void repair() {
+        if(this.latestSeq == 0 || System.nanoTime() - this.lastMulticastTime < TimeUnit.MILLISECONDS.toNanos(this.repairIntervalMillis)) { return; }
+        for (int i = 0; i < this.numProcesses; i++) {
+            if(i != this.processId && this.acknowledgedUpTo[i] < this.latestSeq) {
+                this.multicast(this.retransmitBuffer[this.latestSeq & (this.retransmitBuffer.length - 1)]);
+                return;
+            }
+        }
+    }
+
+    public void close() {
+        try {
+            if(this.receiveChannel != null) { this.receiveChannel.close(); }
+            if(this.sendChannel != null) { this.sendChannel.close(); }
+        }
+        catch (IOException e) {
+            Log.error("couldn't close multicast channels: " + e);
+        }
+        LockSupport.unpark(this.receiverThread);
+        this.tcpTransport.close();
+    }
+
+    TcpTransport getTcpTransport() {
+        return this.tcpTransport;
+    }
+
+    //counters are read without waiting for a send in progress
+    public long getDatagramsSent() {
+        return this.datagramsSent;
+    }
+
+    public long getBytesMulticast() {
+        return this.bytesMulticast;
+    }
+
+    public long getNacksSent() {
+        return this.nacksSent;
+    }
+
+    public long getRetransmissions() {
+        return this.retransmissions;
+    }
+
+    public long getUnrepairable() {
+        return this.unrepairable;
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Predicate;
+
+//seeded discrete-event simulator of the network between processes, running in virtual time as fast as events can be handled
+//every event runs at a virtual time in nanoseconds, and events due at the same time run in the order they were scheduled,
+//so a run only depends on the seed and the settings, never on thread scheduling or the speed of the host
+//a message leaves through it's sender's link, one copy after the other at the link's bandwidth (a broadcast queues a copy per process),
+//then arrives after a one-way latency of base + a sample of the jitter distribution; links keep messages in FIFO order like TCP,
+//unless reordering lets a message overtake earlier ones with a longer latency
+//receivers are handed the sent Message object itself, so handlers must not modify the messages they receive
+public class NetworkSimulator {
+
+    public static final int CONSTANT = 0;   //no jitter
+    public static final int UNIFORM = 1;    //jitter uniform in [0, 2*jitter]
+    public static final int EXPONENTIAL = 2;    //jitter exponential with mean jitter, a long tail of slow messages
+
+    private Random random;
+    private long latencyNanos;  //base one-way latency of every message
+    private long jitterNanos;   //mean of the random part of the latency
+    private int distribution;   //CONSTANT, UNIFORM or EXPONENTIAL
+    private boolean reorder;    //let messages overtake earlier ones on the same link
+    private long bitsPerSecond; //bandwidth of each process' outbound link (0 for unlimited)
+
+    private PriorityQueue<Event> events = new PriorityQueue<Event>();
+    private long now;   //virtual time of the event being run
+    private long scheduled; //num of events scheduled, ordering events due at the same time
+    private long eventsRun; //num of events run
+
+    private Endpoint[] endpoints;
+    private long[] linkFreeAt;  //virtual time each process' outbound link is done sending what it was given
+    private long[] bytesSent;   //num of bytes sent by each process, length prefixes included
+    private long[][] lastArrivals;  //arrival time of the last message from each sender to each receiver (FIFO links only, allocated on a first send)
+
+    //constructor
+    public NetworkSimulator(int numProcesses, long seed, long latencyNanos, long jitterNanos, int distribution, boolean reorder, long bitsPerSecond) {
+        this.random = new Random(seed);
+        this.latencyNanos = latencyNanos;
+        this.jitterNanos = jitterNanos;
+        this.distribution = distribution;
+        this.reorder = reorder;
+        this.bitsPerSecond = bitsPerSecond;
+        this.endpoints = new Endpoint[numProcesses];
+        this.linkFreeAt = new long[numProcesses];
+        this.bytesSent = new long[numProcesses];
+        this.lastArrivals = new long[numProcesses][];
+        for (int i = 0; i < numProcesses; i++) {
+            this.endpoints[i] = new Endpoint(i);
+        }
+    }
+
+    //distribution named by a setting: constant, uniform or exponential
+    public static int distribution(String name) {
+        switch (name) {
+            case "constant": return CONSTANT;
+            case "uniform": return UNIFORM;
+            case "exponential": return EXPONENTIAL;
+            default: throw new IllegalArgumentException("no such latency distribution " + name);
+        }
+    }
+
+    //transport of a process
+    public Endpoint getEndpoint(int processId) {
+        return this.endpoints[processId];
+    }
+
+    //run an action delayNanos after the current virtual time
+    public void schedule(long delayNanos, Runnable action) {
+        this.events.add(new Event(this.now + Math.max(0, delayNanos), this.scheduled++, action));
+    }
+
+    //run events in time order until there is none left, returning the virtual time of the last one
+    public long run() {
+        Event event;
+        while((event = this.events.poll()) != null) {
+            this.now = event.time;
+            this.eventsRun++;
+            event.action.run();
+        }
+        return this.now;
+    }
+
+    //current virtual time, in nanoseconds from the start of the simulation
+    public long now() {
+        return this.now;
+    }
+
+    public long getEventsRun() {
+        return this.eventsRun;
+    }
+
+    public long getBytesSent(int processId) {
+        return this.bytesSent[processId];
+    }
+
+    //fraction of the virtual time so far the outbound link of a process spent sending
+    public double getLinkUtilization(int processId) {
+        if(this.bitsPerSecond == 0 || this.now == 0) { return 0; }
+        return Math.min(1.0, this.bytesSent[processId] * 8 * 1e9 / this.bitsPerSecond / this.now);
+    }
+
+    //queue a copy of a message of size bytes on the sender's link, and schedule it's arrival at the receiver
+    private void transmit(int sender, int receiver, Message message, int size) {
+        long departure = Math.max(this.now, this.linkFreeAt[sender]);
+        if(this.bitsPerSecond > 0) { departure += size * 8 * 1000000000L / this.bitsPerSecond; }
+        this.linkFreeAt[sender] = departure;
+        this.bytesSent[sender] += size;
+
+        long arrival = departure + this.latencyNanos + this.jitter();
+        if(!this.reorder) {
+            if(this.lastArrivals[sender] == null) { this.lastArrivals[sender] = new long[this.endpoints.length]; }
+            arrival = Math.max(arrival, this.lastArrivals[sender][receiver]);
+            this.lastArrivals[sender][receiver] = arrival;
+        }
+
+        Endpoint endpoint = this.endpoints[receiver];
+        this.schedule(arrival - this.now, () -> endpoint.receive(message));
+    }
+
+    private long jitter() {
+        switch (this.distribution) {
+            case UNIFORM: return (long) (this.random.nextDouble() * 2 * this.jitterNanos);
+            case EXPONENTIAL: return (long) (-Math.log(1 - this.random.nextDouble()) * this.jitterNanos);
+            default: return 0;
+        }
+    }
+
+    //transport of a single process over the simulated network
+    public class Endpoint implements Transport {
+        private int processId;
+        private Predicate<Message> handler; //null until started
+        private ArrayDeque<Message> refused = new ArrayDeque<Message>();    //arrived messages waiting for the handler to have room, in arrival order
+        private Runnable onClose;
+        private boolean closed;
+
+        Endpoint(int processId) {
+            this.processId = processId;
+        }
+
+        public void start(Predicate<Message> handler, Runnable onClose) {
+            this.handler = handler;
+            this.onClose = onClose;
+        }
+
+        //messages are sized as MessageCodec would encode them, with their length prefix
+        public void send(Message message, int receiverProcessId) {
+            if(this.closed) { return; }
+            transmit(this.processId, receiverProcessId, message, 4 + MessageCodec.encodedSize(message));
+        }
+
+        public void broadcast(Message message) {
+            if(this.closed) { return; }
+            int size = 4 + MessageCodec.encodedSize(message);
+            for (int i = 0; i < endpoints.length; i++) {
+                if(i != this.processId) { transmit(this.processId, i, message, size); }
+            }
+        }
+
+        //messages arriving at a closed or not yet started endpoint are dropped
+        //while the handler has no room, arriving messages wait behind the one it refused, so none overtakes another
+        private void receive(Message message) {
+            if(this.handler == null || this.closed) { return; }
+            if(!this.refused.isEmpty() || !this.handler.test(message)) { this.refused.add(message); }
+        }
+
+        //hand the waiting messages to the handler again at the current virtual time, in the order they arrived
+        public void resumeReceiving() {
+            schedule(0, () -> {
+                while(!this.closed && !this.refused.isEmpty() && this.handler.test(this.refused.peek())) {
+                    this.refused.poll();
+                }
+            });
+        }
+
+        public void close() {
+            if(this.closed) { return; }
+            this.closed = true;
+            if(this.onClose != null) { this.onClose.run(); }
+        }
+    }
+
+    private static class Event implements Comparable<Event> {
+        final long time;
+        final long order;
+        final Runnable action;
+
+        Event(long time, long order, Runnable action) {
+            this.time = time;
+            this.order = order;
+            this.action = action;
+        }
+
+        public int compareTo(Event other) {
+            int byTime = Long.compare(this.time, other.time);
+            return byTime != 0 ? byTime : Long.compare(this.order, other.order);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+//what a single process delivered, gathered at the end of a run to compare processes and summarize latency
+//forked processes write it to a text file, one "key values" line per field
+public class NodeReport {
+
+    int processId;
+    long createdTime;   //System.nanoTime() the process was created at
+    long readyTimeNanos;    //time from creating the process to starting the client, connected and with the leader elected
+    long deliveryTimeNanos; //time from the start of the client to the delivery of the last message
+    List<Integer> messagesOrder;    //order of delivery of all messages
+    List<List<Integer>> groupOrders = new ArrayList<List<Integer>>();   //order of delivery of the messages of each group
+    long[] latencies;   //request-to-delivery latency of each delivered message, in nanoseconds
+    List<int[]> sentClocks = new ArrayList<int[]>();    //timestamp of each causal broadcast of the process, in order
+
+    //report of a process running in this JVM
+    public static NodeReport of(int processId, Process process) {
+        NodeReport report = new NodeReport();
+        report.processId = processId;
+        report.createdTime = process.getCreatedTime();
+        report.readyTimeNanos = process.getReadyTimeNanos();
+        report.deliveryTimeNanos = process.getDeliveryTimeNanos();
+        report.messagesOrder = process.getMessagesOrder();
+        for (int g = 0; g < process.getGroups(); g++) {
+            report.groupOrders.add(process.getGroupOrder(g));
+        }
+        report.latencies = process.getLatencies();
+        report.sentClocks = process.getSentClocks();
+        return report;
+    }
+
+    //file the report of a process is written to in the given directory
+    public static File fileOf(File directory, int processId) {
+        return new File(directory, "process-" + processId + ".report");
+    }
+
+    //write the report, first to a temporary file renamed once complete so readers never see part of it
+    public void writeTo(File file) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (PrintWriter writer = new PrintWriter(new FileWriter(temporary))) {
+            writer.println("processId " + this.processId);
+            writer.println("createdTime " + this.createdTime);
+            writer.println("readyTimeNanos " + this.readyTimeNanos);
+            writer.println("deliveryTimeNanos " + this.deliveryTimeNanos);
+            writer.println("order " + join(this.messagesOrder));
+            for (List<Integer> groupOrder : this.groupOrders) {
+                writer.println("group " + join(groupOrder));
+            }
+            StringBuilder latencies = new StringBuilder();
+            for (long latency : this.latencies) {
+                if(latencies.length() > 0) { latencies.append(","); }
+                latencies.append(latency);
+            }
+            writer.println("latencies " + latencies);
+            for (int[] clock : this.sentClocks) {
+                StringBuilder entries = new StringBuilder();
+                for (int entry : clock) {
+                    if(entries.length() > 0) { entries.append(","); }
+                    entries.append(entry);
+                }
+                writer.println("clock " + entries);
+            }
+        }
+        if(!temporary.renameTo(file)) {
+            throw new IOException("couldn't rename " + temporary + " to " + file);
+        }
+    }
+
+    //read a report written by writeTo
+    public static NodeReport readFrom(File file) throws IOException {
+        NodeReport report = new NodeReport();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                String key = space < 0 ? line : line.substring(0, space);
+                String values = space < 0 ? "" : line.substring(space + 1);
+                switch (key) {
+                    case "processId": report.processId = Integer.parseInt(values); break;
+                    case "createdTime": report.createdTime = Long.parseLong(values); break;
+                    case "readyTimeNanos": report.readyTimeNanos = Long.parseLong(values); break;
+                    case "deliveryTimeNanos": report.deliveryTimeNanos = Long.parseLong(values); break;
+                    case "order": report.messagesOrder = split(values); break;
+                    case "group": report.groupOrders.add(split(values)); break;
+                    case "latencies":
+                        String[] parts = values.isEmpty() ? new String[0] : values.split(",");
+                        report.latencies = new long[parts.length];
+                        for (int i = 0; i < parts.length; i++) {
+                            report.latencies[i] = Long.parseLong(parts[i]);
+                        }
+                        break;
+                    case "clock": report.sentClocks.add(split(values).stream().mapToInt(Integer::intValue).toArray()); break;
+                    default: throw new IOException("no such report field " + key + " in " + file);
+                }
+            }
+        }
+        return report;
+    }
+
+    private static String join(List<Integer> values) {
+        StringBuilder joined = new StringBuilder();
+        for (int value : values) {
+            if(joined.length() > 0) { joined.append(","); }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    private static List<Integer> split(String values) {
+        List<Integer> list = new ArrayList<Integer>();
+        if(values.isEmpty()) { return list; }
+        for (String value : values.split(",")) {
+            list.add(Integer.parseInt(value));
+        }
+        return list;
+    }
+}
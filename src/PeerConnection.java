@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//long-lived outbound connection to a single process, carrying many length-prefixed frames
+//frames are queued and written in FIFO order by a dedicated sender thread, each drained run with a single gathering write
+//straight from the frames' shared buffers
+public class PeerConnection {
+
+    private String IP;  //IP Address of the receiving process
+    private int port;   //receiving port of the receiving process
+
+    private SocketChannel channel;  //current connection, reopened when broken
+
+    private long giveUpNanos = TimeUnit.SECONDS.toNanos(10);  //time to keep retrying a run of frames before giving up
+    private long minimumBackoffNanos = TimeUnit.MILLISECONDS.toNanos(1);    //wait after the first failed attempt, doubled after each next one
+    private long maximumBackoffNanos = TimeUnit.SECONDS.toNanos(1); //longest wait between two attempts
+    private int maximumDrain = 64;  //max num of queued frames written before a single flush
+
+    private BlockingQueue<Frame> outboundQueue;    //frames waiting to be written, bounded to hold back fast producers
+    private Thread senderThread;    //drains the outbound queue
+
+    private volatile long connectionsOpened;    //num of sockets opened to the receiving process
+    private volatile long framesSent;   //num of frames written to the receiving process
+    private volatile long bytesSent;    //num of bytes written to the receiving process, length prefixes included
+    private volatile long sendRetries;  //num of failed attempts to write a run of frames, each followed by a reconnect
+    private volatile long framesDropped;    //num of frames given up after retrying for giveUpNanos
+    private volatile int maximumQueueDepth; //largest num of frames seen waiting in the outbound queue
+
+    //constructor
+    public PeerConnection(String IP, int port, int queueBound) {
+        this.IP = IP;
+        this.port = port;
+        this.outboundQueue = new ArrayBlockingQueue<Frame>(queueBound);
+    }
+
+    //start the sender thread draining the outbound queue
+    public void start(String name) {
+        this.senderThread = new Thread(this::runSender, name);
+        this.senderThread.setDaemon(true);
+        this.senderThread.start();
+    }
+
+    //queue a frame to be sent, blocking while the queue is full
+    //the queue takes a reference to the frame, released once it is written (or given up)
+    public void enqueue(Frame frame) throws InterruptedException {
+        this.outboundQueue.put(frame.retain());
+
+        int depth = this.outboundQueue.size();
+        if(depth > this.maximumQueueDepth) { this.maximumQueueDepth = depth; }
+    }
+
+    //write queued frames in order, a drained run of frames at a time
+    private void runSender() {
+        List<Frame> frames = new ArrayList<Frame>();
+        while(true) {
+            try {
+                frames.add(this.outboundQueue.take());
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            this.outboundQueue.drainTo(frames, maximumDrain - 1);
+
+            if(!this.send(frames)) {
+                Log.error("couldn't send " + frames.size() + " frames to " + this.IP + ":" + this.port);
+            }
+            for (Frame frame : frames) {
+                frame.release();
+            }
+            frames.clear();
+        }
+    }
+
+    //write the frames, (re)connecting when there is no usable connection
+    //failed attempts are retried after a jittered exponential backoff, so a peer still binding it's port is reached within a few ms
+    //without processes started together retrying in lockstep
+    //a retry resumes from the first frame not fully written, which is written whole on the new connection (the receiver drops the cut one
+    //with the broken connection), so no frame is sent twice: a repeated request would be sequenced twice
+    private synchronized boolean send(List<Frame> frames) {
+        long start = System.nanoTime();
+        long backoff = this.minimumBackoffNanos;
+        ByteBuffer[] views = new ByteBuffer[frames.size()];
+        int first = 0;  //first frame not fully written yet
+        while(true) {
+            try {
+                if(this.channel == null) {
+                    this.connect();
+                }
+
+                //fresh views of the frames left on every attempt
+                long bytes = 0;
+                for (int i = first; i < views.length; i++) {
+                    views[i] = frames.get(i).view();
+                    bytes += views[i].remaining();
+                }
+                for (long written = 0; written < bytes; ) {
+                    written += this.channel.write(views, first, views.length - first);
+                }
+
+                this.framesSent += frames.size() - first;
+                this.bytesSent += bytes;
+                return true;
+            }
+            catch (IOException e) {
+                this.sendRetries++;
+                this.close();   //drop the broken connection, reconnect on the next try
+                while(first < views.length && views[first] != null && !views[first].hasRemaining()) {
+                    this.framesSent++;
+                    this.bytesSent += views[first].limit();
+                    first++;
+                }
+                if(System.nanoTime() - start > this.giveUpNanos) {
+                    this.framesDropped += frames.size() - first;
+                    return false;
+                }
+
+                //wait a random time between half and all of the backoff
+                long wait = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                backoff = Math.min(backoff * 2, this.maximumBackoffNanos);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                catch(InterruptedException err) {
+                    Thread.currentThread().interrupt(); //stopped, let the sender thread exit
+                    return false;
+                }
+            }
+        }
+    }
+
+    //open a new blocking channel to the receiving process
+    private void connect() throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(this.IP, this.port));
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.connectionsOpened++;
+    }
+
+    //stop the sender thread and close the connection, dropping frames still queued and releasing their buffers to the pool
+    //(the sender thread releases the run it was writing)
+    public void stop() {
+        if(this.senderThread != null) { this.senderThread.interrupt(); }
+        this.close();
+        Frame frame;
+        while((frame = this.outboundQueue.poll()) != null) {
+            frame.release();
+        }
+    }
+
+    //close the current connection, if any
+    public synchronized void close() {
+        try {
+            if(this.channel != null) { this.channel.close(); }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.channel = null;
+    }
+
+    //counters are only written by the sender thread, and read without waiting for a send in progress
+    public long getConnectionsOpened() {
+        return this.connectionsOpened;
+    }
+
+    public long getFramesSent() {
+        return this.framesSent;
+    }
+
+    public long getBytesSent() {
+        return this.bytesSent;
+    }
+
+    public long getSendRetries() {
+        return this.sendRetries;
+    }
+
+    public long getFramesDropped() {
+        return this.framesDropped;
+    }
+
+    //num of frames currently waiting in the outbound queue
+    public int getQueueDepth() {
+        return this.outboundQueue.size();
+    }
+
+    public int getMaximumQueueDepth() {
+        return this.maximumQueueDepth;
+    }
+}
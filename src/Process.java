@@ -1,59 +1,123 @@
 import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Random;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 //Class to hold the process
 public class Process {
 
-    private boolean serverTerminate;    //status flag for server
-    private boolean clientTerminate;    //status flag for client
-
-    private int waitTime = 8000;    //time to wait to establish server sockets before starting clients
+    private volatile boolean serverTerminate;   //status flag for server
+    private volatile boolean clientTerminate;   //status flag for client
+    private volatile String failure;    //broken invariant the process stopped on (null while it runs)
+    private final Object progress = new Object();   //notified when delivery completes, and when the client or the server terminates
 
     private int masterProcessId;    //lowest processId to ensure all connections are established 
-    private ArrayList<Integer> acknowledgementList = new ArrayList<>(Arrays.asList());  //list of received acknowledgements
-    private ArrayList<Integer> connectionList = new ArrayList<>(Arrays.asList());  //list of processes with established connections
+    private List<Integer> acknowledgementList = Collections.synchronizedList(new ArrayList<>(Arrays.asList()));  //list of received acknowledgements
+    private List<Integer> connectionList = Collections.synchronizedList(new ArrayList<>(Arrays.asList()));  //list of processes with established connections
     private List<ConnectingProcess> connectingProcessList = new ArrayList<ConnectingProcess>(); //connection information to other processes
+    private Transport transport;    //sends to and receives from every other process
 
     private int processId;  //ID of process
     private int NUM_PROCESSES;  //num of processes
     private int NUM_MESSAGES;  //num of broadcast messages to be sent
     
     private VectorClock vectorClock;    //clock to store timestamp
-    private List<Message> bufferedMessages = Collections.synchronizedList(new ArrayList<Message>());    //list of stored buffer messages
-    private List<Message> deliveredMessages = Collections.synchronizedList(new ArrayList<Message>());   //list of stored delivered messages
-    private List<Integer> bufferedMessagesId = new ArrayList<>();   //list of stored buffer messages' ID
-    private List<Integer> deliveredMessagesId = new ArrayList<>();  //list of stored delivered messages' ID
-
-    private List<Message> requestsList = Collections.synchronizedList(new ArrayList<Message>());  //list of requests (stored by the leader)
-    private Map <Integer, ArrayList<Integer>> receivedRepliesId = new HashMap<Integer, ArrayList<Integer>>();   //HashMap with key=messageId, value=list of processes who received messageId broadcast
+    private DeliveryEngine deliveryEngine;  //buffers messages until they can be delivered in order
+    private ReceivePipeline receivePipeline;    //queues received broadcasts by sender for the delivery thread, and acknowledgements for their own thread
+    private UnstableDeliveries unstableDeliveries;  //count of delivered broadcasts not yet known to be delivered by every process
+    private int[][] latestClocks;   //latest clock delivered from each process (causal mode), telling which broadcasts of every sender it delivered
+
+    private Sequencer sequencer;    //queues, orders and numbers the requests this process sequences, and tracks their acknowledgements (sequencer)
+    private SequencedReceiver sequencedReceiver;    //delivers and acknowledges the broadcasts of each sequencer in it's order
+    private Semaphore[] requestCredits; //permits to send requests to each sequencer, given back as they are sequenced and delivered
+    private int credits;    //num of requests each process may have in flight to each sequencer
+    private volatile long creditStalls; //num of requests that waited for a credit
     private List<Integer> messagesOrder = new ArrayList<>();  //list of order of delivery of messages
-    private int requestsServed; //number of requests that have been broadcasted
+    private int messagesDelivered;  //num of messages delivered
+    private boolean orderHistory;   //keep the whole delivery order and latencies, instead of only counting deliveries
+    private List<List<Integer>> groupOrders = new ArrayList<>();    //order of delivery of messages of each group, indexed by group
+    private List<int[]> sentClocks = new ArrayList<>(); //timestamp of each broadcast of this process in causal mode, in order, to check causal delivery
+    private int requestsServed; //number of requests that have been broadcasted and acknowledged by all processes
+    private int requestsExpected;   //number of requests of all processes falling in the groups of this sequencer (unknown, Integer.MAX_VALUE, until the leader is)
+
+    private int sequencers; //num of sequencers: the elected leader and the processes following it, each owning the groups congruent to it's rank
+    private int groups; //num of groups requests are spread over
+
+    private int windowSize; //num of sequenced broadcasts the leader keeps outstanding
+    private int ackEvery;   //num of delivered broadcasts covered by each cumulative acknowledgement
+    private long ackIntervalMicros; //period of sending a cumulative acknowledgement of broadcasts not yet acknowledged
+    private int acknowledgementsSent;   //num of acknowledgement messages sent to the leader
+    private int acknowledgementsReceived;   //num of acknowledgements received, standalone or piggybacked on requests (leader)
+    private int messagesRequested;  //num of requests made by this process, numbering it's messages
+    private boolean causalMode; //broadcast directly and deliver by vector clocks, without the leader
+
+    private long createdTime;   //time the process was created
+    private volatile long clientStartTime;  //time the client started requesting broadcasts, once the leader is known
+    private volatile long deliveryCompleteTime; //time the last of all messages was delivered (0 until then)
+    private long latencyTotal;  //sum of request-to-delivery latency of all delivered messages
+    private long latencyMaximum;    //largest request-to-delivery latency of a delivered message
+    private long[] latencies;   //request-to-delivery latency of each delivered message, in delivery order
+    private int requestRate;    //requests per second made by the client (0 for random delays)
+    private boolean networkDelay;   //emulate network delay on receiving broadcasts
+    private long sequencingStartTime;   //time of the first broadcast, to report the leader's throughput
+
+    private int batchSize;  //max num of requests packed into one broadcast
+    private long lingerNanos;   //max time to wait for a batch to fill up
+    private long batchDeadline; //time by which the pending partial batch is broadcast anyway (0 when none is waiting)
+    private int batchesSent;    //num of broadcasts sent by the leader
+    private int[] batchSizeCounts;  //num of broadcasts sent with each batch size, indexed by size
+    private ArrayDeque<Message> outgoing = new ArrayDeque<Message>();   //sequenced broadcasts not yet handed to the transport, in sequence order
+    private long[] sequencedTimes;  //time each outstanding broadcast was sequenced at, indexed by sequence number modulo windowSize
+    private boolean flushing;   //the broadcaster is handing the outgoing broadcasts to the transport
+    private ExecutorService broadcaster;    //hands the sequenced broadcasts to the transport, so no sequencing thread waits on a full outbound queue
+    private ScheduledExecutorService timer; //flushes partial batches and cumulative acknowledgements, and dumps metrics
+
+    private ProcessMetrics metrics; //stage latencies, depths and counters, exposed over JMX
+    private String metricsDir;  //directory the metrics are dumped to (null when not dumped)
+    private int metricsIntervalSeconds; //period of dumping metrics
+    private DeliveryTrace deliveryTrace;    //binary trace of the delivery order (null when not traced)
+    private DeliveryLog deliveryLog;    //delivered messages, persisted and replayed on restart (null when not logged)
+    private int deliveriesReplayed; //num of deliveries of earlier runs read back from the delivery log
+    private int[] replayedUpTo; //sequence number of the last replayed delivery of each stream, where this run resumes it
 
     private int directlyDelivered;  //count the num of messages delivered directly without buffering
     private int indirectlyDelivered; //count the num of messages buffered before delivery
 
-    private Object obj = new Object();
-
 
     //constructor
     public Process(int processId, int NUM_PROCESSES, List<ConnectingProcess> connectingProcessList) {
+        this(processId, NUM_PROCESSES, connectingProcessList, new ProcessConfig());
+    }
+
+    public Process(int processId, int NUM_PROCESSES, List<ConnectingProcess> connectingProcessList, ProcessConfig config) {
+        this.createdTime = System.nanoTime();
         this.processId = processId;
         this.NUM_PROCESSES = NUM_PROCESSES;
-        this.NUM_MESSAGES = 100;
+        this.NUM_MESSAGES = config.messages;
         this.connectingProcessList = connectingProcessList;
 
         this.vectorClock = new VectorClock(NUM_PROCESSES, this.processId);
+        if(config.differentialClocks) { this.vectorClock.enableDifferentialTransmission(); }
+        TcpTransport tcpTransport = new TcpTransport(processId, connectingProcessList, this.vectorClock, config);
+        this.transport = tcpTransport;
+        if("multicast".equals(config.transport)) {
+            try {
+                this.transport = new MulticastTransport(processId, connectingProcessList, tcpTransport, this.getTimer(), config);
+            }
+            catch (IOException e) {
+                Log.error("couldn't set up multicast, broadcasting over TCP instead: " + e);
+            }
+        }
 
         this.masterProcessId = 0;
         acknowledgementList.add(processId);
@@ -65,6 +129,71 @@ public class Process {
         this.clientTerminate = false;
 
         this.requestsServed = 0;
+        this.requestsExpected = Integer.MAX_VALUE;
+
+        this.windowSize = config.windowSize;
+        this.sequencedTimes = new long[this.windowSize];
+        this.credits = config.credits;
+        this.requestCredits = new Semaphore[NUM_PROCESSES];
+        for (int i = 0; i < NUM_PROCESSES; i++) {
+            this.requestCredits[i] = new Semaphore(this.credits);
+        }
+        this.metrics = new ProcessMetrics(this, NUM_PROCESSES);
+        this.getTimer().execute(this.metrics::register);   //off the bootstrap path, starting the platform MBean server takes a while in a new JVM
+        this.metricsDir = config.metricsDir;
+        this.metricsIntervalSeconds = config.metricsIntervalSeconds;
+        if(config.traceDir != null) {
+            try {
+                new File(config.traceDir).mkdirs();
+                this.deliveryTrace = new DeliveryTrace(DeliveryTrace.fileOf(new File(config.traceDir), processId));
+            }
+            catch (IOException e) {
+                Log.error("couldn't open delivery trace in " + config.traceDir + ": " + e);
+            }
+        }
+        this.sequencer = new Sequencer(processId, NUM_PROCESSES, this.credits, this.windowSize,
+            SequencingPolicy.of(config.sequencing, SequencingPolicy.weights(config.sequencingWeights, NUM_PROCESSES)), this.metrics.acked);
+        this.ackEvery = config.ackEvery;
+        this.ackIntervalMicros = config.ackIntervalMicros;
+        this.messagesRequested = 0;
+        this.causalMode = config.causalMode;
+        this.orderHistory = config.orderHistory;
+        this.latencies = new long[this.orderHistory ? NUM_MESSAGES * NUM_PROCESSES : 0];
+        this.unstableDeliveries = new UnstableDeliveries(NUM_PROCESSES);
+        this.latestClocks = new int[NUM_PROCESSES][NUM_PROCESSES];
+        this.requestRate = config.rateOf(processId);
+        this.networkDelay = config.networkDelay;
+        this.sequencers = Math.min(config.sequencers, NUM_PROCESSES);
+        this.groups = config.groups;
+        for (int g = 0; g < this.groups; g++) {
+            this.groupOrders.add(new ArrayList<Integer>());
+        }
+        this.deliveryEngine = new DeliveryEngine(NUM_PROCESSES, 64);
+        this.sequencedReceiver = new SequencedReceiver(this.deliveryEngine, NUM_PROCESSES, this.ackEvery);
+        this.receivePipeline = new ReceivePipeline(processId, NUM_PROCESSES, config.receiveQueueBound, this.networkDelay, this::receiveBroadcast, this::sendApplicationAcknowledgement, this.transport::resumeReceiving);
+
+        this.batchSize = config.batchSize;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(config.lingerMicros);
+        this.batchDeadline = 0;
+        this.batchesSent = 0;
+        this.batchSizeCounts = new int[this.batchSize + 1];
+
+        //restore the delivered state of earlier runs of this process from it's log, before appending to it
+        if(config.deliveryLogDir != null) {
+            try {
+                long start = System.nanoTime();
+                this.replayedUpTo = new int[NUM_PROCESSES];
+                this.deliveryLog = new DeliveryLog(new File(config.deliveryLogDir, "process-" + processId), config.deliveryLogSegmentSize,
+                    DeliveryLog.syncPolicy(config.deliveryLogSync), this::replayDelivery);
+                this.restoreStreams();
+                this.deliveryLog.startSyncing(config.deliveryLogSyncIntervalMillis, this.getTimer());
+                Log.info(String.format("Replayed %d deliveries from the delivery log in %.3f s, resuming streams at %s", this.deliveriesReplayed,
+                    (System.nanoTime() - start) / 1e9, Arrays.toString(this.replayedUpTo)));
+            }
+            catch (IOException e) {
+                Log.error("couldn't open delivery log in " + config.deliveryLogDir + ": " + e);
+            }
+        }
     }
 
     //get client status
@@ -77,9 +206,11 @@ public class Process {
     }
 
     //establish connections with all connected processes
+    //nothing waits for the others to start: frames to a process not listening yet are retried with backoff until it binds,
+    //and the handshake moves on as soon as every process answered
     public void establishConnections() throws InterruptedException {
 
-        //start server sockets to receive messages
+        //start server sockets to receive messages, bound once this returns
         this.startServerThreads();
 
         //broadcast an introduction message to check for connections
@@ -87,434 +218,877 @@ public class Process {
         this.broadcastMessage(introductionMessage);
     }
 
-    //create and start server threads to receive messages from all processes
+    //start receiving messages from all processes
     public synchronized void startServerThreads() throws InterruptedException {
-        Thread serverThreads[] = new Thread[NUM_PROCESSES];
-        for (int i = 0; i < NUM_PROCESSES; i++) {
-            serverThreads[i] = getServerThread(i);  //create a listening-thread for ith process
+        try {
+            this.receivePipeline.start();
+            this.transport.start(this::handleMessage, this::stopListening);
+            if(this.metricsDir != null) {
+                new File(this.metricsDir).mkdirs();
+                this.metrics.startDumping(new File(this.metricsDir, "metrics-" + processId + ".log").getPath(), this.metricsIntervalSeconds, this.getTimer());
+            }
         }
-        
-        for (int i = 0; i < NUM_PROCESSES; i++) {
-            if(i == processId) { continue; }
-            
-            serverThreads[i].start();
-            System.out.println("server thread for process " + i + " started");
+        catch (IOException e) {
+            e.printStackTrace();
+            this.stopListening();
         }
-
-        //wait for waitTime to allow creation of clientSockets
-        synchronized(obj) { obj.wait(waitTime); }
     }
 
-    //create and return server threads to receive messages parallelly
-    public Thread getServerThread(int processId) {
-        Thread thread = new Thread(() -> {
-            try {
-                //start listen to messages incoming from processId
-                this.startListening(processId);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
-        return thread;
+
+    //SERVER functions
+    //function called once the server has stopped receiving messages
+    public void stopListening() {
+        Log.info("Total Directly Delivered Messages: " + this.directlyDelivered);
+        Log.info("Total InDirectly Delivered Messages: " + this.indirectlyDelivered);
+        TcpTransport tcpTransport = this.getTcpTransport();
+        if(tcpTransport != null) {
+            Log.info("Outbound Connection Reuse Rate: " + tcpTransport.getConnectionReuseRate());
+            Log.info("Outbound Queue Depths (current/maximum): " + tcpTransport.getQueueDepthReport());
+            Log.info("Inbound Connections Accepted: " + tcpTransport.getInboundServer().getConnectionsAccepted() + " for " + tcpTransport.getInboundServer().getFramesReceived() + " frames");
+        }
+        MulticastTransport multicastTransport = this.getMulticastTransport();
+        if(multicastTransport != null) {
+            Log.info("Multicast: " + multicastTransport.getDatagramsSent() + " datagrams (" + multicastTransport.getBytesMulticast() + " bytes), " + multicastTransport.getNacksSent()
+                + " NACKs sent, " + multicastTransport.getRetransmissions() + " retransmissions, " + multicastTransport.getUnrepairable() + " unrepairable");
+        }
+        Log.info("Receive Queue Depths (current/maximum): " + this.receivePipeline.getQueued() + "/" + this.receivePipeline.getMaximumQueued() + ", " + this.receivePipeline.getReceiveStalls() + " stalls");
+        Log.info("Acknowledgements Sent: " + this.acknowledgementsSent + " for " + this.sequencedReceiver.getDelivered() + " delivered broadcasts");
+        for (String stage : ProcessMetrics.STAGES) {
+            Log.info("Latency " + stage + " (us): " + this.metrics.getHistogram(stage).summary());
+        }
+
+        if(tcpTransport != null && tcpTransport.getInboundServer().getFailure() != null) {
+            this.stop(tcpTransport.getInboundServer().getFailure());    //a message was lost for good, so it's deliveries would never complete
+            return;
+        }
+
+        this.serverTerminate = true;    //terminate server
+        this.signalProgress();
     }
 
+    //function to act on a single incoming message, based on it's type
+    //returns false when there is no room for a broadcast of it's sender yet, the transport handing it over again once there is
+    public boolean handleMessage(Message message) {
+        switch (message.type) {
+            case "INTRODUCTION":
+                //send back acknowledgement to sender confirming a successful connection
+                Message acknowledgementMessage = new Message("ACKNOWLEDGEMENT", processId, message.senderProcessId, null, 0);
+                this.sendMessage(acknowledgementMessage, message.senderProcessId);
+                break;
+        
+            case "ACKNOWLEDGEMENT":
+                this.acknowledgementList.add(message.senderProcessId);  //update receiving an acknowledgement message
+
+                if(this.acknowledgementList.size() == NUM_PROCESSES) {  //when all acknowledgement are received                    
+                    if(processId != this.masterProcessId) {
+                        //inform the masterProcess (processId=0) that all it's connections are established
+                        Message connectMessage = new Message("CONNECTION", processId, this.masterProcessId, null, 0);
+                        this.sendMessage(connectMessage,this.masterProcessId);
+                    }
+                }
+                break;
+            
+            case "CONNECTION":
+                if(processId == this.masterProcessId) {
+
+                    this.connectionList.add(message.senderProcessId);   //update processes with all connections set
 
-    //SERVER functions
-    //function to receive all incoming messages from all processes
-    public void startListening(int recevingProcessId) throws IOException, InterruptedException {
-        ConnectingProcess connectingProcess = connectingProcessList.get(recevingProcessId);
+                    if(this.connectionList.size() == NUM_PROCESSES) {   //when all connections are established
 
-        ServerSocket serverSocket = new ServerSocket(connectingProcess.port);   //creating the server-port connection
+                        //randomly elect a leader
+                        int electedLeader = new Random().nextInt(NUM_PROCESSES);
+                        this.setLeader(electedLeader);
+                        Log.info("Elected Leader is " +  this.masterProcessId);
 
-        try {
-            while (!serverSocket.isClosed() || deliveredMessagesId.size() >= (NUM_PROCESSES-1)*NUM_MESSAGES) {
-                Socket clientSocket = serverSocket.accept();    //accepting client-socket connections               
-                try{
-                    ObjectInputStream inputStream = new ObjectInputStream(clientSocket.getInputStream());
-                    Message message = (Message) inputStream.readObject();
-
-                    if(message != null) {
-
-                        switch (message.type) {
-                            case "INTRODUCTION":
-                                //send back acknowledgement to sender confirming a successful connection
-                                Message acknowledgementMessage = new Message("ACKNOWLEDGEMENT", processId, message.senderProcessId, null, 0);
-                                this.sendMessage(acknowledgementMessage, message.senderProcessId);
-                                break;
-                        
-                            case "ACKNOWLEDGEMENT":
-                                this.acknowledgementList.add(message.senderProcessId);  //update receiving an acknowledgement message
-
-                                if(this.acknowledgementList.size() == NUM_PROCESSES) {  //when all acknowledgement are received                    
-                                    if(processId != this.masterProcessId) {
-                                        //inform the masterProcess (processId=0) that all it's connections are established
-                                        Message connectMessage = new Message("CONNECTION", processId, this.masterProcessId, null, 0);
-                                        this.sendMessage(connectMessage,this.masterProcessId);
-                                    }
-                                }
-                                break;
-                            
-                            case "CONNECTION":
-                                if(processId == this.masterProcessId) {
-
-                                    this.connectionList.add(message.senderProcessId);   //update processes with all connections set
-
-                                    if(this.connectionList.size() == NUM_PROCESSES) {   //when all connections are established
-
-                                        //randomly elect a leader
-                                        int electedLeader = new Random().nextInt(NUM_PROCESSES);
-                                        this.masterProcessId = electedLeader;
-                                        System.out.println("Elected Leader is " +  this.masterProcessId);
-
-                                        //broadcast a LEADER message to inform everyone about the leader and start broadcasting all their messages
-                                        Message leaderMessage = new Message("LEADER", processId, 0, null, electedLeader);
-                                        this.broadcastMessage(leaderMessage);
-
-                                        try {
-                                            //start first-process broacasting
-                                            this.runCausalBroadcast();
-                                        } catch (InterruptedException e) {
-                                            e.printStackTrace();
-                                        }
-                                    }
-                                }
-                                break;
-
-                            case "LEADER":
-                                this.masterProcessId = message.mid;
-                                System.out.println("Elected Leader is " + this.masterProcessId);
-                                try {
-                                    //start non-masterProcess broadcast on receiving START message from masterProcess
-                                    this.runCausalBroadcast();
-                                } catch (InterruptedException e) {
-                                    e.printStackTrace();
-                                }
-                                break;
-
-                            case "APPLICATION":
-                                try {
-                                    this.receiveMessage(message);
-                                }
-                                catch (Exception e) {
-                                    System.out.println("couldn't receive a message");
-                                    e.printStackTrace();
-                                }
-                                break;
-
-                            case "REQ_MASTER":
-                                //store requests incoming from all non-leader nodes
-                                if(this.processId != this.masterProcessId)  break;
-
-                                try {
-                                    if(this.requestsList.size() == 0) {
-                                        this.requestsList.add(message);
-                                        this.sendApplicationBroadcast();    //start brodcasting messages when first request is received
-                                    }
-                                    else {
-                                        this.requestsList.add(message);
-                                    }
-                                }
-                                catch(InterruptedException e) {
-                                    e.printStackTrace();
-                                }
-                                catch(Exception e) {
-                                    e.printStackTrace();
-                                }
-                                break;
-                            
-                            case "APPLICATION_ACK":
-                                //receive acknowledgements from non-leader nodes of delivering broadcast messages
-                                if(this.processId != this.masterProcessId) break;
-
-                                if(!this.receivedRepliesId.containsKey(message.mid))
-                                this.receivedRepliesId.put(message.mid, new ArrayList<Integer>(Arrays.asList(this.masterProcessId)));   //initialize key-value pair
-                                
-                                //add the incoming acknowledgement in the appropriate messageId array
-                                ArrayList<Integer> idList = this.receivedRepliesId.get(message.mid);
-                                idList.add(message.senderProcessId);
-                                this.receivedRepliesId.put(message.mid, idList);
-
-                                if(idList.size() == this.NUM_PROCESSES) {
-                                    this.requestsServed++;
-
-                                    if(this.requestsServed >= (this.NUM_MESSAGES*this.NUM_PROCESSES))   break;
-
-                                    this.sendApplicationBroadcast();    // broadcast the next request when all acknowledgements are received
-                                }
-                                break;
-                            
-                            default:
-                                System.out.println("no such acceptable message type");
-                                break;
-                        }
+                        //broadcast a LEADER message to inform everyone about the leader and start broadcasting all their messages
+                        Message leaderMessage = new Message("LEADER", processId, 0, null, electedLeader);
+                        this.broadcastMessage(leaderMessage);
+
+                        //start first-process broacasting
+                        this.startClientThread();
                     }
                 }
-                catch (IOException | ClassNotFoundException e) {
+                break;
+
+            case "LEADER":
+                this.setLeader(message.mid);
+                Log.info("Elected Leader is " + this.masterProcessId);
+
+                //start non-masterProcess broadcast on receiving START message from masterProcess
+                this.startClientThread();
+                break;
+
+            case "APPLICATION":
+                //ordered and delivered on the delivery thread, so this receiving thread goes back to decoding right away
+                return this.receivePipeline.offer(message);
+
+            case "REQ_MASTER":
+                //store requests incoming from all other nodes, for the groups this sequencer owns
+                if(message.receiverProcessId != this.processId)  break;
+
+                this.queueRequest(message);
+                try {
+                    this.sendApplicationBroadcast();    //broadcast right away if the window has room
+
+                    //requests piggyback the sender's cumulative acknowledgement
+                    if(message.seq > 0) { this.receiveApplicationAcknowledgement(message); }
+                }
+                catch(InterruptedException e) {
                     e.printStackTrace();
                 }
-            }
-        }
-        catch (Exception e) {
-            e.printStackTrace();
+                catch(Exception e) {
+                    e.printStackTrace();
+                }
+                break;
+            
+            case "APPLICATION_ACK":
+                //receive acknowledgements from other nodes of delivering broadcast messages
+                if(message.receiverProcessId != this.processId) break;
+
+                try {
+                    this.receiveApplicationAcknowledgement(message);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                break;
+            
+            default:
+                Log.error("no such acceptable message type " + message.type);
+                break;
         }
-        finally {
-            //close sockets after all messages are received
-            System.out.println("Total Directly Delivered Messages: " + this.directlyDelivered);
-            System.out.println("Total InDirectly Delivered Messages: " + this.indirectlyDelivered);
+        return true;
+    }
 
-            serverSocket.close();
 
-            this.serverTerminate = true;    //terminate server
+    //take the elected leader, and with it the groups this process sequences and how many requests fall in them
+    //done on receiving the election, before the client starts, since requests and acknowledgements of processes that learnt of it earlier may already be arriving
+    private synchronized void setLeader(int leader) {
+        this.masterProcessId = leader;
+        this.requestsExpected = this.countRequestsSequencedBy(this.processId);
+    }
+
+    //queue a request for sequencing behind the earlier ones of it's sender
+    //a sender's queue holds as many requests as it has credits, so a full one means the sender broke flow control (Eg: it runs with more credits),
+    //and the process fails instead of dropping a request that every process would then wait for forever
+    private void queueRequest(Message message) {
+        if(!this.sequencer.queue(message)) {
+            this.fail("request queue of process " + message.senderProcessId + " full on request " + message.mid
+                + ": it has more requests in flight than it's " + this.credits + " credits");
         }
+    }
+
+    //stop the process on a broken invariant, so whoever waits for it's deliveries learns of it instead of waiting forever
+    private void fail(String reason) {
+        Log.error(reason);
+        this.stop(reason);
+        throw new IllegalStateException(reason);
+    }
+
+    //record the failure and wake whoever waits for the process
+    private void stop(String reason) {
+        if(this.failure == null) { this.failure = reason; } //the first one, later ones following from it
+        this.receivePipeline.stop();
+        this.clientTerminate = true;
+        this.serverTerminate = true;
+        this.signalProgress();
+    }
 
+    //broken invariant the process stopped on, or null
+    public String getFailure() {
+        return this.failure;
+    }
+
+    //function called on the delivery thread with each received broadcast, once it's emulated network delay is over
+    private void receiveBroadcast(Message message) {
+        try {
+            if(this.causalMode) {
+                this.receiveCausalMessage(message);
+            }
+            else {
+                this.receiveMessage(message);
+            }
+        }
+        catch (Exception e) {
+            Log.error("couldn't receive a message");
+            e.printStackTrace();
+        }
     }
 
     //function to receive a message and make a decision to buffer or deliver
     public synchronized void receiveMessage(Message message) throws InterruptedException {
-        System.out.println("Received " + message.mid + " : " + message.type);
+        if(Log.DEBUG) { Log.event(Log.RECEIVED, this.processId, message.mid, message.seq); }
 
-        // Emulating Network Delay for (0,5]ms
-        Thread.sleep(new Random().nextInt(5)+1); //uncomment to emulate server network delay
+        //the sequencer piggybacks the broadcasts every process delivered, which are stable
+        this.unstableDeliveries.prune(message.senderProcessId, message.stable);
 
-        //deliver message if it can be, else buffer it
-        if(this.canDeliverMessage(message)) {
-            this.deliverMessage(message);
+        //broadcasts are ordered by the sequence number of the sequencer that sent them
+        int outcome = this.sequencedReceiver.offer(message);
+        if(outcome == DeliveryEngine.DELIVERABLE) {
             this.directlyDelivered += 1;    //increment count of directly delivered messages
-
-            messagesOrder.add(message.mid); //append the messageId in delivered messages
-            System.out.println("Messages Delivery Order is: " + this.messagesOrder);
-            this.sendApplicationAcknowledgement(message);   //send back acknowledgement of receiving broadcast to leader
-            this.vectorClock.updateClock(message);
         }
-        else {
-            System.out.println("buffer message");
-            this.bufferedMessagesId.add(message.mid);
-            this.bufferedMessages.add(message);
+        else if(outcome == DeliveryEngine.HELD_BACK) {
+            if(Log.DEBUG) { Log.event(Log.HELD_BACK, this.processId, message.mid, message.seq); }
             this.indirectlyDelivered += 1;  //increment count of buffered messages
         }
-    }
-
-    //function to deliver message
-    public synchronized void deliverMessage(Message message) {
-        System.out.println("deliver message");
-
-        //update clock with the incoming message
-        this.vectorClock.updateClock(message);
+        else {
+            if(Log.DEBUG) { Log.event(Log.DUPLICATE, this.processId, message.mid, message.seq); }
+            return;
+        }
 
-        //update list of delivered messages
-        this.deliveredMessages.add(message);
-        this.deliveredMessagesId.add(message.mid);
+        //deliver this message and every buffered one it was holding back, in sequence order
+        Message deliverableMessage;
+        while((deliverableMessage = this.sequencedReceiver.poll(message.senderProcessId)) != null) {
+            this.deliverMessage(deliverableMessage);
+        }
+        if(this.deliveryLog != null) { this.deliveryLog.commit(); }  //one sync for every broadcast this message made deliverable
+    }
 
-        //deliver the first message stored in buffer due to this message's late delivery
-        if(this.bufferedMessages.size() > 0) {
-            Message deliverableMessage = getDeliverableBufferMessage(message);
+    //function to deliver message, with every request of a batch delivered in order
+    public synchronized void deliverMessage(Message message) throws InterruptedException {
+        for (Message entry : message.getEntries()) {
+            //update clock with the incoming message
+            this.vectorClock.updateClock(entry);
 
-            if(deliverableMessage == null) { return; }
+            this.recordDelivery(entry, message.senderProcessId, message.seq);   //append the messageId in delivered messages
 
-            //update list of buffered messages, with it's delivery
-            this.bufferedMessages.remove(deliverableMessage);
-            this.bufferedMessagesId.remove(this.bufferedMessagesId.indexOf(deliverableMessage.mid));
+            if(SequencedReceiver.requesterOf(message, entry) == this.processId) { this.requestCredits[message.senderProcessId].release(); }  //the sequencer gives back the credit of each request it sequenced
+        }
 
-            this.deliverMessage(deliverableMessage);
+        //send back a single cumulative acknowledgement to the sequencer, once ackEvery of it's broadcasts are delivered since the last one
+        if(this.sequencedReceiver.isAcknowledgementDue(message.senderProcessId)) {
+            this.receivePipeline.acknowledge(message.senderProcessId);
         }
     }
 
-    //check if the message can be delivered, or needs to be buffered
-    public synchronized boolean canDeliverMessage(Message message) {
-        boolean canDeliver = true;
 
-        this.vectorClock.lockUnlockTime("read","lock");
+    //function to receive a broadcast in causal mode, buffering it until it is causally ready
+    public synchronized void receiveCausalMessage(Message message) throws InterruptedException {
+        if(Log.DEBUG) { Log.event(Log.RECEIVED, this.processId, message.mid, message.clock[message.senderProcessId]); }
 
-        //Comparison based on message ids
-        int messageId = message.mid;
+        //messages of a sender are numbered by the sender's own entry in their timestamp
+        int sender = message.senderProcessId;
+        int outcome = this.deliveryEngine.offer(sender, message.clock[sender], message);
+        if(outcome == DeliveryEngine.DUPLICATE) {
+            if(Log.DEBUG) { Log.event(Log.DUPLICATE, this.processId, message.mid, message.clock[sender]); }
+            return;
+        }
 
-        //always allow delivery of first message
-        if(messageId % 100 == 1) {
-            canDeliver = true;
+        if(outcome == DeliveryEngine.DELIVERABLE && this.vectorClock.isCausallyReady(message.clock, sender)) {
+            this.directlyDelivered += 1;    //increment count of directly delivered messages
         }
         else {
-            int previousMessageId = messageId - 1;
-            //allow delivery of message if immediately previous message is delivered
-            if(this.deliveredMessagesId.contains(previousMessageId)) {
-                canDeliver = true;
-            }
-            //disallow delivery of message if immediately previous message is not delivered or is in buffer
-            else {
-                canDeliver = false;
+            if(Log.DEBUG) { Log.event(Log.HELD_BACK, this.processId, message.mid, message.clock[sender]); }
+            this.indirectlyDelivered += 1;  //increment count of buffered messages
+        }
+
+        //deliver every buffered message that is causally ready, until a full pass delivers nothing
+        boolean delivered = true;
+        while(delivered) {
+            delivered = false;
+            for (int i = 0; i < NUM_PROCESSES; i++) {
+                if(i == processId) { continue; }
+
+                Message deliverableMessage = this.deliveryEngine.peek(i);
+                if(deliverableMessage != null && this.vectorClock.isCausallyReady(deliverableMessage.clock, i)) {
+                    this.deliveryEngine.poll(i);
+                    this.deliverCausalMessage(deliverableMessage);
+                    delivered = true;
+                }
             }
         }
+        if(this.deliveryLog != null) { this.deliveryLog.commit(); }  //one sync for every broadcast this message made deliverable
 
-        this.vectorClock.lockUnlockTime("read","unlock");
+        this.pruneCausallyStable();
+    }
+
+    //function to deliver a causally ready broadcast
+    public synchronized void deliverCausalMessage(Message message) {
+        this.vectorClock.mergeClock(message.clock);
+        VectorClock.merge(this.latestClocks[message.senderProcessId], message.clock);
 
-        return canDeliver;
+        this.recordDelivery(message, message.senderProcessId, message.clock[message.senderProcessId]);
     }
 
-    //return a message stored in buffer that can now be delivered, because it's immediate causal predecessor is now delivered
-    public synchronized Message getDeliverableBufferMessage(Message lastDeliveredMessage) {
+    //a broadcast is stable once every process delivered it: the clock of a process' broadcast counts the broadcasts of each sender it delivered
+    //before sending it, so every sender's broadcasts are stable up to the smallest of it's entries in the latest clocks of all processes
+    private void pruneCausallyStable() {
+        for (int sender = 0; sender < NUM_PROCESSES; sender++) {
+            int stableUpTo = this.vectorClock.get(sender);
+            for (int i = 0; i < NUM_PROCESSES; i++) {
+                if(i != this.processId) { stableUpTo = Math.min(stableUpTo, this.latestClocks[i][sender]); }
+            }
+            this.unstableDeliveries.prune(sender, stableUpTo);
+        }
+    }
 
-        int lastDeliveredMessageId = lastDeliveredMessage.mid;
-        System.out.println("last delivered message Id : " + lastDeliveredMessageId);
+    //record the delivery of a message in the unstable deliveries, delivery order, trace and log, with it's request-to-delivery latency
+    //seq is the sequence number of the broadcast carrying it in the stream of it's sequencer, or the sender's clock entry in causal mode
+    //latency compares System.nanoTime() of sender and receiver, so it is only meaningful when they share a host
+    private synchronized void recordDelivery(Message message, int stream, int seq) {
+        if(Log.DEBUG) { Log.event(Log.DELIVERED, this.processId, message.mid, seq); }
+        this.unstableDeliveries.add(stream, seq);
+        this.messagesDelivered++;
+        if(this.orderHistory) {
+            this.messagesOrder.add(message.mid);
+            if(!this.causalMode) { this.groupOrders.get(message.group).add(message.mid); }
+        }
+        if(this.deliveryTrace != null) { this.deliveryTrace.append(message.mid, seq, message.group, message.senderProcessId); }
+        if(this.deliveryLog != null) {
+            try {
+                this.deliveryLog.append(stream, seq, message);
+            }
+            catch (IOException e) {
+                Log.error("couldn't log delivery of " + message.mid + ": " + e);
+            }
+        }
 
-        //sort the bufferedMessagesId to allow picking the first deliverable message
-        Collections.sort(this.bufferedMessagesId);
+        long latency = Math.max(0, System.nanoTime() - message.timestamp);
+        if(this.orderHistory) {
+            if(this.messagesOrder.size() > this.latencies.length) { this.latencies = Arrays.copyOf(this.latencies, Math.max(16, this.latencies.length * 2)); }
+            this.latencies[this.messagesOrder.size() - 1] = latency;
+        }
+        this.latencyTotal += latency;
+        this.latencyMaximum = Math.max(this.latencyMaximum, latency);
+        this.metrics.delivered.record(latency);
+        this.metrics.deliveredFrom[message.mid % NUM_PROCESSES].record(latency);   //message IDs end in their requester's ID
+
+        if(this.messagesDelivered == NUM_MESSAGES*NUM_PROCESSES) {
+            this.deliveryCompleteTime = System.nanoTime();
+            double seconds = (this.deliveryCompleteTime - this.clientStartTime) / 1e9;
+            Log.info(String.format("Delivered %d messages in %.3f s (%s mode): %.1f messages/s, request-to-delivery latency mean %d us, max %d us",
+                this.messagesDelivered, seconds, this.causalMode ? "causal" : "sequencer", this.messagesDelivered / seconds,
+                this.getAverageLatencyMicros(), TimeUnit.NANOSECONDS.toMicros(this.latencyMaximum)));
+            if(Log.DEBUG && this.orderHistory) { Log.info("Messages Delivery Order is: " + this.messagesOrder); }   //once, instead of on every delivery
+            if(this.deliveryTrace != null) { this.deliveryTrace.flush(); }
+            this.signalProgress();
+        }
+    }
 
-        int deliverableMessageId = 0;
-        try {
-            
-            //last message is delivered
-            if(lastDeliveredMessageId % NUM_MESSAGES == 0) {
-                //pick the earliest sent (least messageId) from the bufferedMessages from the same process
-                Optional<Integer> deliverableMessageStreamId = this.bufferedMessagesId.stream().filter(id -> id > lastDeliveredMessage.senderProcessId*1000 && id < lastDeliveredMessage.senderProcessId*1000+NUM_MESSAGES).findFirst();
-                try {
-                    if(deliverableMessageStreamId != null) {
-                        deliverableMessageId = deliverableMessageStreamId.get();
-                    }
-                } catch (Exception e) {
-                    System.out.println("no more messages to deliver from buffer");
-                }
+    //note how far the stream of a delivery read back from the delivery log got
+    //a stream's sequence number going back to 1 starts a new epoch of it (a log written by runs that each numbered from 1), and only the last epoch is resumed
+    private void replayDelivery(int stream, int seq, Message message) {
+        if(this.causalMode) {
+            this.latestClocks[stream] = message.clock.clone();  //the clock of a sender's latest broadcast dominates those of it's earlier ones
+        }
+        else {
+            this.vectorClock.updateClock(message);
+        }
+        this.replayedUpTo[stream] = seq;
+        this.deliveriesReplayed++;
+    }
+
+    //resume every stream after it's last replayed delivery, so this run numbers and expects broadcasts after those of earlier runs
+    //every process of a cluster restarting from complete logs resumes each stream at the same point
+    private void restoreStreams() {
+        //a causal clock counts the broadcasts of each sender delivered, which is where each sender's stream got
+        if(this.causalMode) { this.vectorClock.mergeClock(this.replayedUpTo); }
+
+        for (int stream = 0; stream < NUM_PROCESSES; stream++) {
+            int seq = this.replayedUpTo[stream];
+            if(seq == 0) { continue; }
+            this.unstableDeliveries.add(stream, seq);
+            if(stream == this.processId) {
+                if(!this.causalMode) { this.sequencer.restore(seq); }   //own causal broadcasts go on from the restored clock
+            }
+            else if(this.causalMode) {
+                this.deliveryEngine.restore(stream, seq + 1L);
             }
-            //all messages except for last message
             else {
-                //deliver immediate next messageId (of same process) if present in buffer, else return
-                Optional<Integer> deliverableMessageStreamId = this.bufferedMessagesId.stream().filter(id -> id == lastDeliveredMessageId+1).findFirst();
-                try {
-                    if(deliverableMessageStreamId != null) {
-                        deliverableMessageId = deliverableMessageStreamId.get();
-                    }
-                } catch (Exception e) {
-                    System.out.println("no more messages to deliver from buffer");
-                }
+                this.sequencedReceiver.restore(stream, seq);
             }
-            System.out.println("deliverableMessageId is " + deliverableMessageId);
-            
-            //return buffered message from it's ID
-            final int deliverID = deliverableMessageId;
-            return this.bufferedMessages.stream().filter(message -> message.mid == deliverID).findFirst().get();
-        }
-        catch (Exception e) {
-            return null;
         }
     }
 
+    //num of deliveries of earlier runs replayed from the delivery log
+    public int getDeliveriesReplayed() {
+        return this.deliveriesReplayed;
+    }
+
+    //sequence number each stream was resumed at after replaying the delivery log (null when not logged)
+    public int[] getReplayedUpTo() {
+        return this.replayedUpTo;
+    }
 
     //CLIENT functions
+    //run the broadcasts on their own thread, keeping the receiving loop free
+    public void startClientThread() {
+        Thread thread = new Thread(() -> {
+            try {
+                this.runCausalBroadcast();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }, "client-" + processId);
+        thread.start();
+    }
+
     //start broadcasting messages
     public void runCausalBroadcast() throws InterruptedException {
+        this.clientStartTime = System.nanoTime();
+        Log.info(String.format("Process %d ready in %.1f ms", this.processId, this.getReadyTimeNanos() / 1e6));
+
+        if(!this.causalMode && this.ackEvery > 1) {
+            this.getTimer().scheduleAtFixedRate(this::flushAcknowledgement, this.ackIntervalMicros, this.ackIntervalMicros, TimeUnit.MICROSECONDS);
+        }
 
         for (int i = 0; i < NUM_MESSAGES; i++) {
 
-            // Emulating Delay of (0,10]ms
-            Thread.sleep(new Random().nextInt(10)+1);
-            this.vectorClock.updateLocalClock(this.processId);  //update local time for this new broadcast event
-            
-            int mid = processId*1000 + i + 1;   //creating a unique message ID
-            Message message = new Message("REQ_MASTER", processId, this.masterProcessId, this.vectorClock.getVectorClock(), mid);   //send a request to leader to broadcast it's message
-            System.out.println("Request Master " + mid);
+            if(this.requestRate > 0) {
+                //open-loop load: the i-th request is due i/rate seconds after the start, however long earlier ones took
+                long due = this.clientStartTime + i * 1000000000L / this.requestRate;
+                long wait = due - System.nanoTime();
+                if(wait > 0) { TimeUnit.NANOSECONDS.sleep(wait); }
+            }
+            else {
+                // Emulating Delay of (0,10]ms
+                Thread.sleep(new Random().nextInt(10)+1);
+            }
 
-            if(this.processId == this.masterProcessId) {
-                Thread.sleep(new Random().nextInt(5)+1);    //emulate leader's network delay of sending messages to itself
+            if(this.causalMode) {
+                this.sendCausalBroadcast();
+                continue;
+            }
 
-                if(this.requestsList.size() == 0) {
-                    this.requestsList.add(message);
-                    this.sendApplicationBroadcast();    //start brodcasting messages when first request is received
-                }
-                else {
-                    this.requestsList.add(message);
-                }
+            int mid = this.nextMessageId(); //creating a unique message ID
+            int group = this.groupOf(this.messagesRequested);
+            int sequencer = this.sequencerOf(group);
+
+            //backpressure: wait for the sequencer to sequence an earlier request when all credits are in flight
+            if(!this.requestCredits[sequencer].tryAcquire()) {
+                this.creditStalls++;
+                this.requestCredits[sequencer].acquire();
+            }
+
+            //update local time for this new broadcast event
+            //every request gets it's own timestamp array, since a transport may keep the message itself instead of encoding it on send
+            int[] clock = new int[NUM_PROCESSES];
+            this.vectorClock.tick(clock);
+
+            Message message = new Message("REQ_MASTER", processId, sequencer, clock, mid);   //send a request to the group's sequencer to broadcast it's message
+            message.group = group;
+            message.timestamp = System.nanoTime();
+            if(this.processId != sequencer) {
+                message.seq = this.takeAcknowledgement(sequencer);  //piggyback a cumulative acknowledgement of delivered broadcasts
+            }
+            if(Log.DEBUG) { Log.event(Log.REQUESTED, this.processId, mid, group); }
+
+            if(this.processId == sequencer) {
+                if(this.networkDelay) { Thread.sleep(new Random().nextInt(5)+1); } //emulate leader's network delay of sending messages to itself
+
+                this.queueRequest(message);
+                this.sendApplicationBroadcast();    //broadcast right away if the window has room
             }
             else {
-                this.sendMessage(message, this.masterProcessId);    //send request message to leader
+                this.sendMessage(message, sequencer);   //send request message to the sequencer
             }
         }
 
         this.clientTerminate = true;    //terminate client
+        this.signalProgress();
     }
 
-    //function to send application broadcast messages to all processes
-    public synchronized void sendApplicationBroadcast() throws InterruptedException {
+    //broadcast a message directly to all processes in causal mode, delivering it to itself right away
+    //only the client thread broadcasts, so it's broadcasts are sent in the order they were stamped, without holding the lock while the transport may block
+    public void sendCausalBroadcast() {
+        this.broadcastMessage(this.stampCausalBroadcast());
+    }
 
-        if(this.requestsList.size() == 0)   return;
+    //timestamp a new causal broadcast and deliver it to this process
+    private synchronized Message stampCausalBroadcast() {
+        this.vectorClock.updateLocalClock(this.processId);  //count this broadcast in the process' own entry
 
-        Message message = this.requestsList.get(0); //process the earliest request message (top priority)
+        int mid = this.nextMessageId(); //creating a unique message ID
+        Message message = new Message("APPLICATION", processId, processId, this.vectorClock.getVectorClock(), mid);
+        message.timestamp = System.nanoTime();
+        if(Log.DEBUG) { Log.event(Log.SENT_CAUSAL, this.processId, mid, 0); }
 
-        this.vectorClock.updateClock(message);
+        if(this.orderHistory) { this.sentClocks.add(message.clock); }
 
-        Message applicationMessage = new Message("APPLICATION", this.processId, message.senderProcessId, message.clock, message.mid);
-        System.out.println("Send Application " + applicationMessage.mid + " to process " + message.senderProcessId);
-        this.broadcastMessage(applicationMessage);  //broadcast application  message
-        
-        this.messagesOrder.add(applicationMessage.mid); //append delivery of message to itself
-        System.out.println("Messages Delivery Order is " + this.messagesOrder);
+        this.recordDelivery(message, this.processId, message.clock[this.processId]);
+        if(this.deliveryLog != null) { this.deliveryLog.commit(); }
+        return message;
+    }
 
-        this.requestsList.remove(0);    //remove the currently processed request
+    //group of a process' n-th request: each process cycles through all groups, starting from a different one
+    private int groupOf(int request) {
+        return (request + this.processId) % this.groups;
     }
 
-    //function to send application acknowledgement to the leader
-    public synchronized void sendApplicationAcknowledgement(Message message) throws InterruptedException {
-        Message acknowledgementMessage = new Message("APPLICATION_ACK", this.processId, this.masterProcessId, message.clock, message.mid);
-        System.out.println("Send Acknowledgement " + acknowledgementMessage.mid + " to process " + this.masterProcessId);
-        this.sendMessage(acknowledgementMessage, this.masterProcessId); //send acknowledgement message to leader
+    //sequencer owning a group: the elected leader, or one of the processes following it
+    public int sequencerOf(int group) {
+        return (this.masterProcessId + group % this.sequencers) % NUM_PROCESSES;
     }
 
-    //broadcast a message to all connections
-    public void broadcastMessage(Message message) {
-        //array of client threads to broadcast to all other processes parallely
-        Thread clientThreads[] = new Thread[NUM_PROCESSES];
+    //num of requests of all processes that fall in the groups of the given sequencer
+    private int countRequestsSequencedBy(int sequencer) {
+        int count = 0;
+        for (int p = 0; p < NUM_PROCESSES; p++) {
+            for (int request = 1; request <= NUM_MESSAGES; request++) {
+                if(this.sequencerOf((request + p) % this.groups) == sequencer) { count++; }
+            }
+        }
+        return count;
+    }
 
-        for (int i = 0; i < NUM_PROCESSES; i++) {
-            if(i == processId) { continue; }    //not create for self
+    //unique message ID: the count of this process' requests, interleaved with the IDs of all other processes
+    private int nextMessageId() {
+        this.messagesRequested++;
+        return this.messagesRequested * NUM_PROCESSES + processId;
+    }
 
-            clientThreads[i] = getClientThread(message, i);
-        }
-        for (int i = 0; i < clientThreads.length; i++) {
-            if(i == processId) { continue; }    //not start for self
+    //function to send application broadcast messages to all processes, keeping up to windowSize of them outstanding
+    //each broadcast packs up to batchSize requests, waiting up to the linger time for a partial batch to fill up
+    //broadcasts are sequenced under the lock, but handed to the transport by the broadcaster thread, since a full outbound queue blocks:
+    //the selector loops sequence on receiving requests and acknowledgements, and waiting there would stop them reading every other connection
+    //the window bounds the broadcasts sequenced ahead of the transport
+    public void sendApplicationBroadcast() throws InterruptedException {
+        this.sequenceBroadcasts();
+        if(this.startFlushing()) { this.getBroadcaster().execute(this::flushBroadcasts); }
+    }
+
+    //sequence the queued requests into broadcasts while the window has room, delivering them to this process and queueing them for the transport
+    private synchronized void sequenceBroadcasts() {
+
+        int queued;
+        while(this.sequencer.isWindowOpen() && (queued = this.getRequestsQueued()) > 0) {
+
+            if(queued < this.batchSize && this.lingerNanos > 0) {
+                long now = System.nanoTime();
+                if(this.batchDeadline == 0) {
+                    //first wait for this batch, flush it once the linger time is over
+                    this.batchDeadline = now + this.lingerNanos;
+                    this.getTimer().schedule(this::flushBatch, this.lingerNanos, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                if(now < this.batchDeadline) { return; }
+            }
+            this.batchDeadline = 0;
+
+            //take the requests in the order of the sequencing policy, each sender's own requests in the order it made them
+            //when no request is ready (slots claimed but not yet written) the batch ends early, and the rest are taken on the next call
+            Message[] batch = new Message[Math.min(this.batchSize, queued)];
+            int size = this.sequencer.take(batch);
+            if(size == 0) { return; }
+
+            long sequencedTime = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                this.vectorClock.updateClock(batch[i]);
+                this.metrics.sequenced.record(sequencedTime - batch[i].timestamp);
+            }
+
+            Message applicationMessage = this.sequencer.broadcast(batch, size);
+            if(this.batchesSent == 0) { this.sequencingStartTime = System.nanoTime(); }
+
+            if(Log.DEBUG) { Log.event(Log.SENT_APPLICATION, this.processId, applicationMessage.mid, applicationMessage.seq); }
+            this.sequencedTimes[applicationMessage.seq % this.windowSize] = sequencedTime;
+            this.outgoing.add(applicationMessage);  //broadcast application message once the lock is released
+            this.batchesSent++;
+            this.batchSizeCounts[size]++;
 
-            clientThreads[i].start();
+            for (int i = 0; i < size; i++) {
+                Message entry = batch[i];
+                this.recordDelivery(entry, this.processId, applicationMessage.seq); //append delivery of message to itself
+                if(entry.senderProcessId == this.processId) { this.requestCredits[this.processId].release(); }
+            }
+            if(this.deliveryLog != null) { this.deliveryLog.commit(); }
         }
     }
 
-    //function to create a client thread for a single process
-    public Thread getClientThread(Message message, int receiverProcessId) {
-        Thread thread = new Thread(() -> {
+    //check if sequenced broadcasts wait for the transport while no flush is under way, marking one as started
+    private synchronized boolean startFlushing() {
+        if(this.flushing || this.outgoing.isEmpty()) { return false; }
+        this.flushing = true;
+        return true;
+    }
+
+    //hand the sequenced broadcasts to the transport in sequence order, without holding the lock, on the broadcaster thread
+    //broadcasts sequenced meanwhile are left to the running flush, which only ends once none is left
+    private void flushBroadcasts() {
+        Message message;
+        while((message = this.takeOutgoing()) != null) {
+            long sequencedTime = this.sequencedTimes[message.seq % this.windowSize];    //kept until the broadcast is acknowledged, so after it is sent
             try {
-                this.sendMessage(message, receiverProcessId);
-            } catch (Exception e) {
-                e.printStackTrace();
+                this.broadcastMessage(message);
+            }
+            catch (RuntimeException e) {
+                //the broadcast would never be delivered elsewhere, and it's successors would wait for it forever
+                String reason = "couldn't hand broadcast " + message.seq + " to the transport: " + e;
+                Log.error(reason);
+                this.stop(reason);
+                return;
+            }
+            this.metrics.broadcast.record(System.nanoTime() - sequencedTime);
+        }
+    }
+
+    //next sequenced broadcast to hand to the transport, or null once there is none, ending the flush
+    private synchronized Message takeOutgoing() {
+        Message message = this.outgoing.poll();
+        if(message == null) { this.flushing = false; }
+        return message;
+    }
+
+    //broadcast the pending partial batch once it's linger time is over
+    private void flushBatch() {
+        try {
+            this.sendApplicationBroadcast();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //broadcaster thread, started on first use
+    private synchronized ExecutorService getBroadcaster() {
+        if(this.broadcaster == null) {
+            this.broadcaster = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "broadcaster-" + processId);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.broadcaster;
+    }
+
+    //timer thread flushing partial batches and cumulative acknowledgements, started on first use
+    private synchronized ScheduledExecutorService getTimer() {
+        if(this.timer == null) {
+            this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "timer-" + processId);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.timer;
+    }
+
+    //function to collect a cumulative acknowledgement of every broadcast up to message.seq, freeing window slots of broadcasts all processes have delivered
+    public void receiveApplicationAcknowledgement(Message message) throws InterruptedException {
+        if(this.collectAcknowledgement(message)) {
+            this.sendApplicationBroadcast();    //broadcast the next requests into the freed window slots
+        }
+    }
+
+    //count an acknowledgement, returning true if it freed window slots for more requests to be broadcast
+    private synchronized boolean collectAcknowledgement(Message message) {
+        this.acknowledgementsReceived++;
+
+        int served = this.sequencer.acknowledge(message.senderProcessId, message.seq);
+        if(served == 0) { return false; }
+        this.requestsServed += served;
+        this.unstableDeliveries.prune(this.processId, this.sequencer.getCompletedUpTo());
+
+        if(this.requestsServed >= this.requestsExpected) {
+            double seconds = (System.nanoTime() - this.sequencingStartTime) / 1e9;
+            Log.info(String.format("Sequenced %d requests in %.3f s with window %d (sequencer %d of %d): %.1f messages/s", this.requestsServed, seconds, this.windowSize,
+                (this.processId - this.masterProcessId + NUM_PROCESSES) % NUM_PROCESSES + 1, this.sequencers, this.requestsServed / seconds));
+            Log.info(this.getBatchReport());
+            Log.info("Received " + this.acknowledgementsReceived + " acknowledgements for " + this.batchesSent + " broadcasts");
+            return false;
+        }
+        return true;
+    }
+
+    //summary of the batch sizes achieved by the leader
+    public synchronized String getBatchReport() {
+        StringBuilder report = new StringBuilder();
+        int requests = 0;
+        for (int size = 1; size < this.batchSizeCounts.length; size++) {
+            requests += size * this.batchSizeCounts[size];
+            if(this.batchSizeCounts[size] > 0) {
+                report.append(" ").append(size).append("x").append(this.batchSizeCounts[size]);
             }
-        });
-        return thread;
+        }
+        double average = this.batchesSent == 0 ? 0 : (double) requests / this.batchesSent;
+        return String.format("Sent %d broadcasts with average batch size %.2f (batch size %d, linger %d us), size x count:%s", this.batchesSent, average, this.batchSize, TimeUnit.NANOSECONDS.toMicros(this.lingerNanos), report);
+    }
+
+    //function to send a cumulative application acknowledgement of every delivered broadcast of a sequencer back to it, called on the acknowledgement thread
+    //the lock is only held to take the sequence number, not while the acknowledgement is queued for sending
+    public void sendApplicationAcknowledgement(int sequencer) {
+        Message acknowledgementMessage = new Message("APPLICATION_ACK", this.processId, sequencer, null, 0);
+        synchronized(this) {
+            if(!this.sequencedReceiver.isUnacknowledged(sequencer)) { return; }  //acknowledged since, piggybacked on a request
+            acknowledgementMessage.seq = this.takeAcknowledgement(sequencer);
+        }
+        if(Log.DEBUG) { Log.event(Log.SENT_ACKNOWLEDGEMENT, this.processId, acknowledgementMessage.seq, sequencer); }
+        this.sendMessage(acknowledgementMessage, sequencer);    //send acknowledgement message to the sequencer
+        this.acknowledgementsSent++;
+    }
+
+    //sequence number of the last delivered broadcast of a sequencer, to be acknowledged now to it
+    private synchronized int takeAcknowledgement(int sequencer) {
+        return this.sequencedReceiver.takeAcknowledgement(sequencer);
+    }
+
+    //periodically acknowledge broadcasts delivered since the last acknowledgement, so no sequencer waits for ackEvery deliveries
+    private synchronized void flushAcknowledgement() {
+        for (int sequencer = 0; sequencer < NUM_PROCESSES; sequencer++) {
+            if(this.sequencedReceiver.isUnacknowledged(sequencer)) {
+                this.receivePipeline.acknowledge(sequencer);
+            }
+        }
+    }
+
+    //broadcast a message to all other processes
+    public void broadcastMessage(Message message) {
+        this.transport.broadcast(message);
     }
 
     //send a given message to the particular receiverProcessId
     public void sendMessage(Message message, int receiverProcessId) {
-        int maximumTries = 5;
-        int currentTries = 0;
-        while(currentTries < maximumTries) {
-            try {
-                ConnectingProcess receiverConnectingProcess = connectingProcessList.get(receiverProcessId);
-                ConnectingProcess senderConnectingProcess = connectingProcessList.get(processId);
-
-                //client socket to connect to receiving port of receiverProcessId
-                Socket socket = new Socket(receiverConnectingProcess.IP, senderConnectingProcess.port);
+        this.transport.send(message, receiverProcessId);
+    }
 
-                //stream output the message
-                ObjectOutputStream output = new ObjectOutputStream(socket.getOutputStream());
-                output.writeObject(message);
-                output.flush();
+    //check if all messages of all processes have been delivered
+    public boolean isDeliveryComplete() {
+        return this.deliveryCompleteTime != 0;
+    }
 
-                return;
+    //wait until every message is delivered, returning false if timeoutMillis passed first or the process terminated without it
+    public boolean awaitDelivery(long timeoutMillis) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        synchronized(this.progress) {
+            while(!this.isDeliveryComplete() && !(this.clientTerminate && this.serverTerminate)) {
+                long remaining = timeoutMillis - (System.currentTimeMillis() - start);
+                if(remaining <= 0) { break; }
+                this.progress.wait(remaining);
             }
-            catch (Exception e) {
-                currentTries += 1;
-                try {
-                    Thread.sleep(1000);
-                }
-                catch(InterruptedException err) {
-                    err.printStackTrace();
-                }
+        }
+        return this.isDeliveryComplete();
+    }
+
+    //wait until both the client and the server terminated
+    public void awaitTermination() throws InterruptedException {
+        synchronized(this.progress) {
+            while(!(this.clientTerminate && this.serverTerminate)) {
+                this.progress.wait();
             }
         }
+    }
+
+    //wake up the threads waiting for delivery or termination
+    private void signalProgress() {
+        synchronized(this.progress) {
+            this.progress.notifyAll();
+        }
+    }
+
+    //System.nanoTime() the process was created at
+    public long getCreatedTime() {
+        return this.createdTime;
+    }
 
+    //time from creating the process to starting the client, once connected to every process and the leader is elected (0 until then)
+    public long getReadyTimeNanos() {
+        return this.clientStartTime == 0 ? 0 : this.clientStartTime - this.createdTime;
     }
 
+    //time from the start of the client to the delivery of the last message
+    public long getDeliveryTimeNanos() {
+        return this.deliveryCompleteTime - this.clientStartTime;
+    }
+
+    public synchronized long getAverageLatencyMicros() {
+        return this.messagesDelivered == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(this.latencyTotal / this.messagesDelivered);
+    }
+
+    public synchronized long getMaximumLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(this.latencyMaximum);
+    }
+
+    //copy of the request-to-delivery latency of every delivered message, in nanoseconds
+    public synchronized long[] getLatencies() {
+        return Arrays.copyOf(this.latencies, Math.min(this.latencies.length, this.messagesOrder.size()));
+    }
+
+    //num of groups requests are spread over
+    public int getGroups() {
+        return this.groups;
+    }
+
+    //copy of the order in which messages were delivered
+    public synchronized List<Integer> getMessagesOrder() {
+        return new ArrayList<Integer>(this.messagesOrder);
+    }
+
+    //copy of the timestamps of this process' causal broadcasts, the n-th one being the timestamp of it's n-th message
+    public synchronized List<int[]> getSentClocks() {
+        return new ArrayList<int[]>(this.sentClocks);
+    }
+
+    //copy of the order in which messages of a group were delivered, identical on every process in sequencer mode
+    public synchronized List<Integer> getGroupOrder(int group) {
+        return new ArrayList<Integer>(this.groupOrders.get(group));
+    }
+
+    //stop receiving and sending, closing every connection
+    public void shutdown() {
+        this.receivePipeline.stop();
+        this.metrics.dump();
+        this.metrics.unregister();
+        if(this.deliveryTrace != null) { this.deliveryTrace.close(); }
+        if(this.deliveryLog != null) { this.deliveryLog.close(); }
+        this.transport.close();
+        synchronized(this) {
+            if(this.broadcaster != null) { this.broadcaster.shutdownNow(); }
+        }
+    }
+
+    public int getProcessId() {
+        return this.processId;
+    }
+
+    public ProcessMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    //gauges and counters read by the metrics, without waiting for the process' lock
+    int getRequestsQueued() {
+        return this.sequencer.getQueued();
+    }
+
+    long getCreditStalls() {
+        return this.creditStalls;
+    }
+
+    ReceivePipeline getReceivePipeline() {
+        return this.receivePipeline;
+    }
+
+    int getMessagesHeldBack() {
+        return this.deliveryEngine.getHeldBack();
+    }
+
+    int getUnstableDeliveries() {
+        return this.unstableDeliveries.size();
+    }
+
+    long getDirectlyDelivered() {
+        return this.directlyDelivered;
+    }
+
+    long getIndirectlyDelivered() {
+        return this.indirectlyDelivered;
+    }
+
+    //TCP transport, on it's own or under multicast (null over another transport)
+    private TcpTransport getTcpTransport() {
+        if(this.transport instanceof MulticastTransport) { return ((MulticastTransport) this.transport).getTcpTransport(); }
+        return this.transport instanceof TcpTransport ? (TcpTransport) this.transport : null;
+    }
+
+    //connections and server of the TCP transport, read by the metrics (none over another transport)
+    PeerConnection[] getPeerConnections() {
+        TcpTransport tcpTransport = this.getTcpTransport();
+        return tcpTransport != null ? tcpTransport.getPeerConnections() : new PeerConnection[0];
+    }
+
+    InboundServer getInboundServer() {
+        TcpTransport tcpTransport = this.getTcpTransport();
+        return tcpTransport != null ? tcpTransport.getInboundServer() : null;
+    }
+
+    MulticastTransport getMulticastTransport() {
+        return this.transport instanceof MulticastTransport ? (MulticastTransport) this.transport : null;
+    }
 }
\ No newline at end of file
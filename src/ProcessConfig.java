@@ -0,0 +1,86 @@
+//tunable settings of a process, read from system properties (Eg: java -Dwindow=8 Start 0)
+public class ProcessConfig {
+
+    int messages;   //num of broadcast messages requested by each process
+    int rate;   //requests per second made by each process (0 to wait a random (0,10] ms between requests instead)
+    String rates;   //comma separated request rate of each process, overriding rate for skewed load (null for rate everywhere)
+    boolean networkDelay;   //emulate a network delay of (0,5] ms on receiving each broadcast
+    boolean causalMode; //broadcast directly and deliver in causal order by vector clocks, instead of through the leader's total order
+    int sequencers; //num of processes sequencing broadcasts, each owning a share of the groups
+    int groups; //num of groups (partition keys) requests are spread over, each totally ordered by one sequencer
+    int windowSize; //num of sequenced broadcasts the leader keeps outstanding (awaiting acknowledgements)
+    int batchSize;  //max num of requests the leader packs into one broadcast
+    int lingerMicros;   //max time the leader waits for a batch to fill up before broadcasting it
+    int credits;    //num of requests each process may have in flight to each sequencer, before waiting for earlier ones to be sequenced
+    String sequencing;  //order a sequencer takes the requests of different senders in: round-robin, weighted or oldest-first
+    String sequencingWeights;   //comma separated weight of each sender, with the weighted policy (null for all 1)
+    int ackEvery;   //num of delivered broadcasts covered by each cumulative acknowledgement
+    int ackIntervalMicros;  //period of acknowledging broadcasts not covered yet, when ackEvery > 1
+    int queueBound; //max num of frames waiting in each outbound queue before senders block
+    int receiveQueueBound;  //max num of received broadcasts of each sender waiting for the delivery thread before it's sender isn't read from
+    String transport;   //tcp, or multicast to send sequenced broadcasts once over UDP multicast
+    String multicastGroup;  //multicast group address
+    int multicastPort;  //multicast port (0 for the TCP port of process 0)
+    String multicastInterface;  //name of the interface to multicast on (null for the interface of the process' own address)
+    int multicastRetransmit;    //num of latest broadcasts a sequencer keeps for retransmission (at least twice the window)
+    int multicastRepairIntervalMillis;  //period of re-multicasting the latest broadcast while some process hasn't acknowledged it
+    double multicastLoss;   //fraction of received datagrams dropped on purpose, to exercise repair
+    int selectorThreads;    //num of selector loops receiving from all other processes
+    int receiveBufferSize;  //size of each pooled buffer that inbound frames are decoded from
+    int frameBufferSize;    //size of each pooled buffer that outbound frames are encoded into (larger frames get a buffer of their own)
+    String metricsDir;  //directory to append each process' metrics to, every metricsInterval seconds (null to not dump them)
+    int metricsIntervalSeconds; //period of dumping metrics
+    boolean orderHistory;   //keep every delivered message's ID and latency, for the launcher and benchmarks to compare (off by default, for a flat heap)
+    String traceDir;    //directory to write each process' binary delivery trace to (null to not trace deliveries)
+    String deliveryLogDir;  //directory of each process' memory-mapped delivery log, appended to by every run (null to not log deliveries)
+    int deliveryLogSegmentSize; //size of each delivery log segment file, in bytes
+    String deliveryLogSync; //when delivery log records are forced to disk: none, interval or always
+    int deliveryLogSyncIntervalMillis;  //period of forcing delivery log records to disk, with the interval policy
+    boolean differentialClocks; //send only the clock entries that changed since the last message to each process
+
+    //constructor
+    public ProcessConfig() {
+        this.messages = Math.max(1, Integer.getInteger("messages", 100));
+        this.rate = Math.max(0, Integer.getInteger("rate", 0));
+        this.rates = System.getProperty("rates");
+        this.networkDelay = Boolean.parseBoolean(System.getProperty("networkDelay", "true"));
+        this.causalMode = "causal".equals(System.getProperty("mode", "sequencer"));
+        this.sequencers = Math.max(1, Integer.getInteger("sequencers", 1));
+        this.groups = Math.max(1, Integer.getInteger("groups", 16));
+        this.windowSize = Math.max(1, Integer.getInteger("window", 1));
+        this.batchSize = Math.max(1, Integer.getInteger("batch", 1));
+        this.lingerMicros = Math.max(0, Integer.getInteger("linger", 0));
+        this.credits = Math.max(1, Integer.getInteger("credits", 64));
+        this.sequencing = System.getProperty("sequencing", "round-robin");
+        this.sequencingWeights = System.getProperty("sequencingWeights");
+        this.ackEvery = Math.max(1, Integer.getInteger("ackEvery", 1));
+        this.ackIntervalMicros = Math.max(1, Integer.getInteger("ackInterval", 1000));
+        this.queueBound = Math.max(1, Integer.getInteger("queueBound", 1024));
+        this.receiveQueueBound = Math.max(1, Integer.getInteger("receiveQueueBound", 1024));
+        this.transport = System.getProperty("transport", "tcp");
+        this.multicastGroup = System.getProperty("multicastGroup", "239.255.42.1");
+        this.multicastPort = Math.max(0, Integer.getInteger("multicastPort", 0));
+        this.multicastInterface = System.getProperty("multicastInterface");
+        this.multicastRetransmit = Math.max(1, Integer.getInteger("multicastRetransmit", 1024));
+        this.multicastRepairIntervalMillis = Math.max(1, Integer.getInteger("multicastRepairInterval", 10));
+        this.multicastLoss = Math.min(1.0, Math.max(0.0, Double.parseDouble(System.getProperty("multicastLoss", "0"))));
+        this.selectorThreads = Math.max(1, Integer.getInteger("selectorThreads", 1));
+        this.receiveBufferSize = Math.max(64, Integer.getInteger("receiveBufferSize", 64 * 1024));
+        this.frameBufferSize = Math.max(64, Integer.getInteger("frameBufferSize", 4096));
+        this.metricsDir = System.getProperty("metricsDir");
+        this.metricsIntervalSeconds = Math.max(1, Integer.getInteger("metricsInterval", 10));
+        this.orderHistory = Boolean.getBoolean("orderHistory");
+        this.traceDir = System.getProperty("traceDir");
+        this.deliveryLogDir = System.getProperty("deliveryLog");
+        this.deliveryLogSegmentSize = Math.min(1024, Math.max(1, Integer.getInteger("deliveryLogSegment", 64))) << 20;
+        this.deliveryLogSync = System.getProperty("deliveryLogSync", "interval");
+        this.deliveryLogSyncIntervalMillis = Math.max(1, Integer.getInteger("deliveryLogSyncInterval", 10));
+        this.differentialClocks = Boolean.getBoolean("differentialClocks");
+    }
+
+    //request rate of a process, from rates when it lists one for the process
+    int rateOf(int processId) {
+        String[] values = this.rates == null || this.rates.isEmpty() ? new String[0] : this.rates.split(",");
+        return processId < values.length ? Math.max(0, Integer.parseInt(values[processId].trim())) : this.rate;
+    }
+}
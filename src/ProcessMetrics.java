@@ -0,0 +1,295 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+//latency histograms of each stage a message goes through, and gauges and counters read from the parts of a process
+//registered over JMX, and optionally appended to a file as one "key=value ..." line per interval
+public class ProcessMetrics implements ProcessMetricsMXBean {
+
+    public static final String[] STAGES = {"sequenced", "broadcast", "delivered", "acked"};
+
+    LatencyHistogram sequenced = new LatencyHistogram();    //request sent to sequenced by the leader
+    LatencyHistogram broadcast = new LatencyHistogram();    //sequenced to queued for every process, encoding and backpressure included
+    LatencyHistogram delivered = new LatencyHistogram();    //request sent to delivered, at every process
+    LatencyHistogram acked = new LatencyHistogram();    //broadcast to acknowledged by every process (leader)
+    LatencyHistogram[] deliveredFrom;   //request sent to delivered, for the requests of each sender, to compare how fairly they are served
+
+    private Process process;
+    private ObjectName objectName;  //name registered over JMX (null when not registered)
+    private boolean unregistered;   //set once unregistered, so that a registration still pending is skipped
+    private String dumpFile;    //file the metrics are appended to (null when not dumped)
+
+    //constructor
+    public ProcessMetrics(Process process, int numProcesses) {
+        this.process = process;
+        this.deliveredFrom = new LatencyHistogram[numProcesses];
+        for (int i = 0; i < numProcesses; i++) {
+            this.deliveredFrom[i] = new LatencyHistogram();
+        }
+    }
+
+    //histogram of a stage, in the order of STAGES
+    public LatencyHistogram getHistogram(String stage) {
+        switch (stage) {
+            case "sequenced": return this.sequenced;
+            case "broadcast": return this.broadcast;
+            case "delivered": return this.delivered;
+            case "acked": return this.acked;
+            default: throw new IllegalArgumentException("no such stage " + stage);
+        }
+    }
+
+    //expose the metrics over JMX, replacing a bean left by an earlier process with the same ID in this JVM
+    public synchronized void register() {
+        if(this.unregistered) { return; }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            this.objectName = new ObjectName("totalorder:type=Process,id=" + this.process.getProcessId());
+            if(server.isRegistered(this.objectName)) { server.unregisterMBean(this.objectName); }
+            server.registerMBean(this, this.objectName);
+        }
+        catch (JMException e) {
+            Log.error("couldn't register metrics over JMX: " + e);
+            this.objectName = null;
+        }
+    }
+
+    public synchronized void unregister() {
+        this.unregistered = true;
+        if(this.objectName == null) { return; }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        }
+        catch (JMException e) {
+            Log.error("couldn't unregister metrics from JMX: " + e);
+        }
+        this.objectName = null;
+    }
+
+    //append the metrics to the file every intervalSeconds, on the given timer
+    public void startDumping(String file, int intervalSeconds, ScheduledExecutorService timer) {
+        this.dumpFile = file;
+        timer.scheduleAtFixedRate(this::dump, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    //append the current metrics to the dump file, if any
+    public synchronized void dump() {
+        if(this.dumpFile == null) { return; }
+        try (PrintWriter writer = new PrintWriter(new FileWriter(this.dumpFile, true))) {
+            writer.println(this.toString());
+        }
+        catch (IOException e) {
+            Log.error("couldn't write metrics to " + this.dumpFile + ": " + e);
+        }
+    }
+
+    //every metric as one line of space separated key=value pairs, starting with the wall-clock time in milliseconds (latencies in microseconds)
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        line.append("time=").append(System.currentTimeMillis());
+        for (Map.Entry<String, Object> entry : this.getValues().entrySet()) {
+            line.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return line.toString();
+    }
+
+    private Map<String, Object> getValues() {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        values.put("processId", this.getProcessId());
+        values.put("requestsQueued", this.getRequestsQueued());
+        values.put("messagesHeldBack", this.getMessagesHeldBack());
+        values.put("unstableDeliveries", this.getUnstableDeliveries());
+        values.put("creditStalls", this.getCreditStalls());
+        values.put("outboundQueueDepth", this.getOutboundQueueDepth());
+        values.put("maximumOutboundQueueDepth", this.getMaximumOutboundQueueDepth());
+        values.put("receiveQueued", this.getReceiveQueued());
+        values.put("maximumReceiveQueued", this.getMaximumReceiveQueued());
+        values.put("receiveStalls", this.getReceiveStalls());
+        values.put("acknowledgementsPending", this.getAcknowledgementsPending());
+        values.put("reconnects", this.getReconnects());
+        values.put("sendRetries", this.getSendRetries());
+        values.put("framesDropped", this.getFramesDropped());
+        values.put("framesSent", this.getFramesSent());
+        values.put("bytesSent", this.getBytesSent());
+        values.put("framesReceived", this.getFramesReceived());
+        values.put("bytesReceived", this.getBytesReceived());
+        values.put("datagramsMulticast", this.getDatagramsMulticast());
+        values.put("bytesMulticast", this.getBytesMulticast());
+        values.put("nacksSent", this.getNacksSent());
+        values.put("retransmissions", this.getRetransmissions());
+        values.put("directlyDelivered", this.getDirectlyDelivered());
+        values.put("indirectlyDelivered", this.getIndirectlyDelivered());
+        for (Map.Entry<String, Long> entry : this.getLatencyMicros().entrySet()) {
+            values.put("latency." + entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : this.getSenderLatencyMicros().entrySet()) {
+            values.put("senderLatency." + entry.getKey(), entry.getValue());
+        }
+        return values;
+    }
+
+    public int getProcessId() {
+        return this.process.getProcessId();
+    }
+
+    public int getRequestsQueued() {
+        return this.process.getRequestsQueued();
+    }
+
+    public int getMessagesHeldBack() {
+        return this.process.getMessagesHeldBack();
+    }
+
+    public long getCreditStalls() {
+        return this.process.getCreditStalls();
+    }
+
+    public int getUnstableDeliveries() {
+        return this.process.getUnstableDeliveries();
+    }
+
+    public int getOutboundQueueDepth() {
+        int depth = 0;
+        for (PeerConnection peerConnection : this.process.getPeerConnections()) {
+            if(peerConnection != null) { depth += peerConnection.getQueueDepth(); }
+        }
+        return depth;
+    }
+
+    public int getMaximumOutboundQueueDepth() {
+        int depth = 0;
+        for (PeerConnection peerConnection : this.process.getPeerConnections()) {
+            if(peerConnection != null) { depth = Math.max(depth, peerConnection.getMaximumQueueDepth()); }
+        }
+        return depth;
+    }
+
+    public int getReceiveQueued() {
+        return this.process.getReceivePipeline().getQueued();
+    }
+
+    public int getMaximumReceiveQueued() {
+        return this.process.getReceivePipeline().getMaximumQueued();
+    }
+
+    public long getReceiveStalls() {
+        return this.process.getReceivePipeline().getReceiveStalls();
+    }
+
+    public int getAcknowledgementsPending() {
+        return this.process.getReceivePipeline().getAcknowledgementsPending();
+    }
+
+    public long getReconnects() {
+        long reconnects = 0;
+        for (PeerConnection peerConnection : this.process.getPeerConnections()) {
+            if(peerConnection != null) { reconnects += Math.max(0, peerConnection.getConnectionsOpened() - 1); }
+        }
+        return reconnects;
+    }
+
+    public long getSendRetries() {
+        long retries = 0;
+        for (PeerConnection peerConnection : this.process.getPeerConnections()) {
+            if(peerConnection != null) { retries += peerConnection.getSendRetries(); }
+        }
+        return retries;
+    }
+
+    public long getFramesDropped() {
+        long dropped = 0;
+        for (PeerConnection peerConnection : this.process.getPeerConnections()) {
+            if(peerConnection != null) { dropped += peerConnection.getFramesDropped(); }
+        }
+        return dropped;
+    }
+
+    public long getFramesSent() {
+        long frames = 0;
+        for (PeerConnection peerConnection : this.process.getPeerConnections()) {
+            if(peerConnection != null) { frames += peerConnection.getFramesSent(); }
+        }
+        return frames;
+    }
+
+    public long getBytesSent() {
+        long bytes = 0;
+        for (PeerConnection peerConnection : this.process.getPeerConnections()) {
+            if(peerConnection != null) { bytes += peerConnection.getBytesSent(); }
+        }
+        return bytes;
+    }
+
+    public long getFramesReceived() {
+        InboundServer inboundServer = this.process.getInboundServer();
+        return inboundServer == null ? 0 : inboundServer.getFramesReceived();
+    }
+
+    public long getBytesReceived() {
+        InboundServer inboundServer = this.process.getInboundServer();
+        return inboundServer == null ? 0 : inboundServer.getBytesReceived();
+    }
+
+    public long getDatagramsMulticast() {
+        MulticastTransport multicastTransport = this.process.getMulticastTransport();
+        return multicastTransport == null ? 0 : multicastTransport.getDatagramsSent();
+    }
+
+    public long getBytesMulticast() {
+        MulticastTransport multicastTransport = this.process.getMulticastTransport();
+        return multicastTransport == null ? 0 : multicastTransport.getBytesMulticast();
+    }
+
+    public long getNacksSent() {
+        MulticastTransport multicastTransport = this.process.getMulticastTransport();
+        return multicastTransport == null ? 0 : multicastTransport.getNacksSent();
+    }
+
+    public long getRetransmissions() {
+        MulticastTransport multicastTransport = this.process.getMulticastTransport();
+        return multicastTransport == null ? 0 : multicastTransport.getRetransmissions();
+    }
+
+    public long getDirectlyDelivered() {
+        return this.process.getDirectlyDelivered();
+    }
+
+    public long getIndirectlyDelivered() {
+        return this.process.getIndirectlyDelivered();
+    }
+
+    public Map<String, Long> getLatencyMicros() {
+        Map<String, Long> latencies = new LinkedHashMap<String, Long>();
+        for (String stage : STAGES) {
+            LatencyHistogram histogram = this.getHistogram(stage);
+            latencies.put(stage + ".count", histogram.getCount());
+            latencies.put(stage + ".mean", TimeUnit.NANOSECONDS.toMicros(histogram.getMean()));
+            latencies.put(stage + ".p50", TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtQuantile(0.50)));
+            latencies.put(stage + ".p99", TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtQuantile(0.99)));
+            latencies.put(stage + ".p999", TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtQuantile(0.999)));
+            latencies.put(stage + ".max", TimeUnit.NANOSECONDS.toMicros(histogram.getMaximum()));
+        }
+        return latencies;
+    }
+
+    public Map<String, Long> getSenderLatencyMicros() {
+        Map<String, Long> latencies = new LinkedHashMap<String, Long>();
+        for (int sender = 0; sender < this.deliveredFrom.length; sender++) {
+            LatencyHistogram histogram = this.deliveredFrom[sender];
+            latencies.put(sender + ".count", histogram.getCount());
+            latencies.put(sender + ".p50", TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtQuantile(0.50)));
+            latencies.put(sender + ".p99", TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtQuantile(0.99)));
+            latencies.put(sender + ".max", TimeUnit.NANOSECONDS.toMicros(histogram.getMaximum()));
+        }
+        return latencies;
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.Map;
+
+//runtime metrics of a process, exposed over JMX as totalorder:type=Process,id=<processId>
+public interface ProcessMetricsMXBean {
+
+    int getProcessId();
+
+    //depths
+    int getRequestsQueued();    //requests waiting to be sequenced (leader)
+    int getMessagesHeldBack();  //broadcasts received ahead of their predecessors
+    int getUnstableDeliveries();    //delivered broadcasts not yet known to be delivered by every process
+    long getCreditStalls(); //requests that waited for a credit, the sequencer being slower than the client
+    int getOutboundQueueDepth();    //frames waiting in all outbound queues
+    int getMaximumOutboundQueueDepth(); //largest depth seen in a single outbound queue
+
+    //receive pipeline, by stage: decoding on the receiving threads, per-sender ordering queues, delivery (messagesHeldBack), acknowledgements
+    int getReceiveQueued(); //received broadcasts waiting in the per-sender queues for the delivery thread
+    int getMaximumReceiveQueued();  //largest num seen waiting in all of them
+    long getReceiveStalls();    //broadcasts a receiving thread waited to queue, it's sender's queue being full
+    int getAcknowledgementsPending();   //sequencers owed an acknowledgement the acknowledgement thread hasn't sent yet
+
+    //connections
+    long getReconnects();   //sockets reopened after the first one of each connection
+    long getSendRetries();  //failed attempts to write frames
+    long getFramesDropped();    //frames given up after every attempt failed
+
+    //bytes on the wire
+    long getFramesSent();
+    long getBytesSent();
+    long getFramesReceived();
+    long getBytesReceived();
+
+    //multicast (zero over TCP only)
+    long getDatagramsMulticast();   //sequenced broadcasts sent once to the group, repeats included
+    long getBytesMulticast();
+    long getNacksSent();    //requests for broadcasts missing from the group
+    long getRetransmissions();  //broadcasts sent again over TCP, answering NACKs
+
+    long getDirectlyDelivered();
+    long getIndirectlyDelivered();
+
+    //latency of each stage in microseconds, keyed <stage>.<statistic> (Eg: delivered.p99)
+    //stages: sequenced (request sent to sequenced), broadcast (sequenced to queued for every process),
+    //delivered (request sent to delivered), acked (broadcast to acknowledged by every process)
+    Map<String, Long> getLatencyMicros();
+
+    //request-to-delivery latency of the requests of each sender in microseconds, keyed <sender>.<statistic> (Eg: 2.p99)
+    Map<String, Long> getSenderLatencyMicros();
+}
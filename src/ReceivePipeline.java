@@ -0,0 +1,182 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+//staged receive path of broadcasts, connected by lock-free queues, so the threads receiving from different senders never wait on each other or on delivery
+//decode: the transport's receiving threads decode each broadcast and offer it to the queue of it's sender, in parallel for every sender
+//a full queue refuses the broadcast, and the transport stops receiving from it's sender until the delivery thread drained the queue to half
+//ordering: each sender's queue keeps it's broadcasts in the order they arrived, and holds the one at it's head for the emulated network delay
+//without holding back any other sender's
+//delivery: a single thread takes the broadcasts that are due from the heads of the queues, one sender after the other, and hands them to the process,
+//which orders them in it's hold-back buffer and delivers them
+//acknowledgement: delivery only marks the sequencers owed an acknowledgement, and a thread of it's own sends them, so delivery never waits on an outbound queue
+//marks of the same sequencer made before it's acknowledgement is sent are sent as one, acknowledgements being cumulative
+public class ReceivePipeline {
+
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);    //longest the delivery thread parks without being woken up
+
+    private int processId;
+    private RequestQueue[] queues;  //broadcasts of each sender waiting for delivery, in the order they arrived
+    private long[] dueTimes;    //System.nanoTime() the broadcast at the head of each queue is due at (0 when not yet timed, delivery thread only)
+    private boolean networkDelay;   //emulate a network delay of (0,5]ms on each broadcast of a sender, one after the other
+    private Consumer<Message> delivery; //orders and delivers a broadcast, called from the delivery thread only
+    private IntConsumer acknowledgement;    //sends a cumulative acknowledgement to a sequencer, called from the acknowledgement thread only
+    private Runnable resume;    //makes the transport hand the refused broadcasts over again, called from the delivery thread only
+    private AtomicIntegerArray acknowledgementsPending; //1 for each sequencer owed an acknowledgement
+    private AtomicIntegerArray stalled; //1 for each sender whose queue refused a broadcast, until it's drained to half
+
+    private volatile boolean running;
+    private volatile Thread deliveryThread;
+    private volatile Thread acknowledgementThread;
+
+    private AtomicLong receiveStalls = new AtomicLong();    //num of broadcasts offered to a full queue, their sender not being received from until delivery caught up (counted by every receiving thread)
+    private volatile int maximumQueued; //largest num of broadcasts seen waiting in all queues
+
+    //constructor, each sender's queue holding up to capacity broadcasts
+    public ReceivePipeline(int processId, int numProcesses, int capacity, boolean networkDelay, Consumer<Message> delivery, IntConsumer acknowledgement, Runnable resume) {
+        this.processId = processId;
+        this.queues = new RequestQueue[numProcesses];
+        for (int i = 0; i < numProcesses; i++) {
+            this.queues[i] = new RequestQueue(capacity);
+        }
+        this.dueTimes = new long[numProcesses];
+        this.networkDelay = networkDelay;
+        this.delivery = delivery;
+        this.acknowledgement = acknowledgement;
+        this.resume = resume;
+        this.acknowledgementsPending = new AtomicIntegerArray(numProcesses);
+        this.stalled = new AtomicIntegerArray(numProcesses);
+    }
+
+    //start the delivery and acknowledgement threads
+    public void start() {
+        this.running = true;
+        this.deliveryThread = new Thread(this::runDelivery, "delivery-" + this.processId);
+        this.deliveryThread.setDaemon(true);
+        this.deliveryThread.start();
+        this.acknowledgementThread = new Thread(this::runAcknowledgements, "acks-" + this.processId);
+        this.acknowledgementThread.setDaemon(true);
+        this.acknowledgementThread.start();
+    }
+
+    //queue a decoded broadcast behind the earlier ones of it's sender, returning false without queueing it when it's sender's queue is full
+    //the receiving thread then stops receiving from that sender and goes on with the others, instead of waiting for room,
+    //and the transport is resumed once delivery drained the queue to half
+    //the sender is marked before offering again, so the delivery thread either makes room for the second offer or sees the mark
+    public boolean offer(Message message) {
+        int sender = message.senderProcessId;
+        RequestQueue queue = this.queues[sender];
+        if(!queue.offer(message)) {
+            if(!this.running) { return true; } //dropped, like everything still queued
+            this.stalled.set(sender, 1);
+            if(!queue.offer(message)) {
+                this.receiveStalls.incrementAndGet();
+                LockSupport.unpark(this.deliveryThread);
+                return false;
+            }
+        }
+        LockSupport.unpark(this.deliveryThread);
+        return true;
+    }
+
+    //take the due broadcast at the head of each sender's queue in turn, parking until the next one is due when none is
+    private void runDelivery() {
+        while(this.running) {
+            long now = System.nanoTime();
+            long wait = IDLE_NANOS;
+            boolean delivered = false;
+            int queued = 0;
+            for (int sender = 0; sender < this.queues.length; sender++) {
+                queued += this.queues[sender].size();
+                Message message = this.queues[sender].peek();
+                if(message == null) { continue; }
+
+                if(this.networkDelay) {
+                    if(this.dueTimes[sender] == 0) { this.dueTimes[sender] = now + TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextInt(5) + 1); }
+                    if(this.dueTimes[sender] > now) {
+                        wait = Math.min(wait, this.dueTimes[sender] - now);
+                        continue;
+                    }
+                    this.dueTimes[sender] = 0;
+                }
+
+                this.queues[sender].poll();
+                try {
+                    this.delivery.accept(message);
+                }
+                catch (RuntimeException e) {
+                    Log.error("couldn't deliver broadcast " + message.mid + " of process " + sender + ": " + e);
+                }
+                delivered = true;
+
+                //resume receiving from a sender whose broadcast was refused, once there is room for half a queue of them
+                if(this.stalled.get(sender) == 1 && this.queues[sender].size() <= this.queues[sender].capacity() / 2 && this.stalled.getAndSet(sender, 0) == 1) {
+                    this.resume.run();
+                }
+            }
+            if(queued > this.maximumQueued) { this.maximumQueued = queued; }
+            if(!delivered) { LockSupport.parkNanos(this, wait); }
+        }
+    }
+
+    //mark a sequencer as owed a cumulative acknowledgement of the broadcasts delivered so far
+    public void acknowledge(int sequencer) {
+        if(this.acknowledgementsPending.getAndSet(sequencer, 1) == 0) { LockSupport.unpark(this.acknowledgementThread); }
+    }
+
+    //send an acknowledgement to every marked sequencer, parking until the next mark when there is none
+    private void runAcknowledgements() {
+        while(this.running) {
+            boolean sent = false;
+            for (int sequencer = 0; sequencer < this.acknowledgementsPending.length(); sequencer++) {
+                if(this.acknowledgementsPending.get(sequencer) == 0 || this.acknowledgementsPending.getAndSet(sequencer, 0) == 0) { continue; }
+                try {
+                    this.acknowledgement.accept(sequencer);
+                }
+                catch (RuntimeException e) {
+                    Log.error("couldn't acknowledge broadcasts of process " + sequencer + ": " + e);
+                }
+                sent = true;
+            }
+            if(!sent) { LockSupport.park(this); }
+        }
+    }
+
+    //stop the delivery and acknowledgement threads, dropping the broadcasts still queued
+    public void stop() {
+        this.running = false;
+        LockSupport.unpark(this.deliveryThread);
+        LockSupport.unpark(this.acknowledgementThread);
+    }
+
+    //depths of each stage, read without stopping it
+    //num of broadcasts waiting in the ordering stage
+    public int getQueued() {
+        int queued = 0;
+        for (RequestQueue queue : this.queues) {
+            queued += queue.size();
+        }
+        return queued;
+    }
+
+    public int getMaximumQueued() {
+        return this.maximumQueued;
+    }
+
+    //num of sequencers owed an acknowledgement not yet sent
+    public int getAcknowledgementsPending() {
+        int pending = 0;
+        for (int sequencer = 0; sequencer < this.acknowledgementsPending.length(); sequencer++) {
+            pending += this.acknowledgementsPending.get(sequencer);
+        }
+        return pending;
+    }
+
+    public long getReceiveStalls() {
+        return this.receiveStalls.get();
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//bounded multi-producer single-consumer queue of the requests of one sender waiting to be sequenced, in a preallocated ring
+//producers (the receiving loops and the sequencer's own client) claim a slot with one CAS and publish it by writing it's position,
+//and the sequencer takes slots in claimed order without locking or shifting the remaining requests
+//a client only sends a request while it holds one of it's credits, so a queue sized to the sender's credits never fills up
+//the receive pipeline queues each sender's broadcasts on their way to delivery in the same rings
+public class RequestQueue {
+
+    private final Message[] slots;  //requests, indexed by position modulo capacity
+    private final AtomicLongArray published;    //position+1 of the request in each slot, once it is written (0 for a slot never written)
+    private final AtomicLong tail = new AtomicLong();   //position of the next request to be offered
+    private volatile long head; //position of the next request to be taken
+
+    //constructor, capacity rounded up to a power of 2
+    public RequestQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new Message[size];
+        this.published = new AtomicLongArray(size);
+    }
+
+    //add a request at the tail, returning false when the queue is full
+    public boolean offer(Message request) {
+        long position;
+        do {
+            position = this.tail.get();
+            if(position - this.head >= this.slots.length) { return false; }
+        } while(!this.tail.compareAndSet(position, position + 1));
+
+        int slot = (int) (position & (this.slots.length - 1));
+        this.slots[slot] = request;
+        this.published.lazySet(slot, position + 1);
+        return true;
+    }
+
+    //request at the head without removing it, or null if there is none or it is still being written (single consumer)
+    public Message peek() {
+        long position = this.head;
+        int slot = (int) (position & (this.slots.length - 1));
+        return this.published.get(slot) == position + 1 ? this.slots[slot] : null;
+    }
+
+    //remove and return the request at the head, or null if there is none or it is still being written (single consumer)
+    public Message poll() {
+        long position = this.head;
+        int slot = (int) (position & (this.slots.length - 1));
+        if(this.published.get(slot) != position + 1) { return null; }
+
+        Message request = this.slots[slot];
+        this.slots[slot] = null;
+        this.head = position + 1;
+        return request;
+    }
+
+    //num of requests offered and not yet taken
+    public int size() {
+        return (int) Math.max(0, this.tail.get() - this.head);
+    }
+
+    public int capacity() {
+        return this.slots.length;
+    }
+}
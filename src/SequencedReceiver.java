@@ -0,0 +1,70 @@
+//receiver side of sequencer mode, shared by Process and the simulated processes of Simulation:
+//broadcasts of each sequencer are delivered in the sequencer's order, the ones arriving early being held back,
+//and acknowledged cumulatively, a single acknowledgement of the latest delivered broadcast covering every earlier one
+//it neither delivers nor sends by itself, so the caller decides what a delivery does and when an acknowledgement leaves
+public class SequencedReceiver {
+
+    private DeliveryEngine deliveryEngine;  //holds back broadcasts until their predecessors of the same sequencer are delivered
+    private int ackEvery;   //num of delivered broadcasts covered by each acknowledgement
+    private int[] deliveredSequenceNumbers; //sequence number of the last delivered broadcast of each sequencer
+    private int[] acknowledgedSequenceNumbers;  //sequence number of the last broadcast acknowledged to each sequencer
+
+    //constructor, holding broadcasts back in the given engine, with a stream per sequencer
+    public SequencedReceiver(DeliveryEngine deliveryEngine, int numProcesses, int ackEvery) {
+        this.deliveryEngine = deliveryEngine;
+        this.ackEvery = ackEvery;
+        this.deliveredSequenceNumbers = new int[numProcesses];
+        this.acknowledgedSequenceNumbers = new int[numProcesses];
+    }
+
+    //resume a sequencer's stream after seq, the last of it's broadcasts delivered in an earlier run, as acknowledged already
+    public void restore(int sequencer, int seq) {
+        this.deliveryEngine.restore(sequencer, seq + 1L);
+        this.deliveredSequenceNumbers[sequencer] = seq;
+        this.acknowledgedSequenceNumbers[sequencer] = seq;
+    }
+
+    //take a received broadcast, returning DeliveryEngine.DELIVERABLE, HELD_BACK or DUPLICATE
+    public int offer(Message broadcast) {
+        return this.deliveryEngine.offer(broadcast.senderProcessId, broadcast.seq, broadcast);
+    }
+
+    //remove and return the next broadcast of a sequencer in it's order, counting it as delivered, or null if it hasn't arrived yet
+    //calling this until null drains every broadcast that became deliverable
+    public Message poll(int sequencer) {
+        Message broadcast = this.deliveryEngine.poll(sequencer);
+        if(broadcast != null) { this.deliveredSequenceNumbers[sequencer] = broadcast.seq; }
+        return broadcast;
+    }
+
+    //process that requested an entry of a broadcast, whose credit it's delivery gives back
+    //a single request is broadcast as the broadcast itself, naming it's requester as the receiver
+    public static int requesterOf(Message broadcast, Message entry) {
+        return broadcast.batch == null ? broadcast.receiverProcessId : entry.senderProcessId;
+    }
+
+    //check if ackEvery broadcasts of a sequencer were delivered since the last acknowledgement to it
+    public boolean isAcknowledgementDue(int sequencer) {
+        return this.deliveredSequenceNumbers[sequencer] - this.acknowledgedSequenceNumbers[sequencer] >= this.ackEvery;
+    }
+
+    //check if a broadcast of a sequencer was delivered since the last acknowledgement to it
+    public boolean isUnacknowledged(int sequencer) {
+        return this.deliveredSequenceNumbers[sequencer] > this.acknowledgedSequenceNumbers[sequencer];
+    }
+
+    //sequence number of the last delivered broadcast of a sequencer, to be acknowledged now to it
+    public int takeAcknowledgement(int sequencer) {
+        this.acknowledgedSequenceNumbers[sequencer] = this.deliveredSequenceNumbers[sequencer];
+        return this.acknowledgedSequenceNumbers[sequencer];
+    }
+
+    //num of broadcasts delivered of all sequencers
+    public long getDelivered() {
+        long delivered = 0;
+        for (int seq : this.deliveredSequenceNumbers) {
+            delivered += seq;
+        }
+        return delivered;
+    }
+}
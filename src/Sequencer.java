@@ -0,0 +1,95 @@
+import java.util.Arrays;
+
+//sequencer side of sequencer mode, shared by Process and the simulated processes of Simulation:
+//requests wait in a queue per sender, are taken in the order of a sequencing policy, packed into broadcasts numbered in this sequencer's
+//total order, and kept outstanding until every process acknowledged them, up to windowSize broadcasts at a time
+//it neither sends nor waits, so the caller decides when to sequence (Eg: after lingering for a batch) and how the broadcasts leave
+public class Sequencer {
+
+    private int processId;  //ID of the sequencing process
+    private RequestQueue[] requestQueues;   //requests of each sender waiting to be sequenced, each bounded by the sender's credits
+    private SequencingPolicy sequencingPolicy;  //order requests are taken from the queues of each sender in
+    private AckTracker ackTracker;  //which broadcasts every process has delivered
+    private int windowSize; //num of broadcasts kept outstanding (awaiting acknowledgements)
+    private int nextSequenceNumber; //sequence number of the next broadcast
+
+    //constructor, completionLatency recording the time from sending each broadcast to it's last acknowledgement (null to not measure it)
+    public Sequencer(int processId, int numProcesses, int credits, int windowSize, SequencingPolicy sequencingPolicy, LatencyHistogram completionLatency) {
+        this.processId = processId;
+        this.requestQueues = new RequestQueue[numProcesses];
+        for (int i = 0; i < numProcesses; i++) {
+            this.requestQueues[i] = new RequestQueue(credits);
+        }
+        this.sequencingPolicy = sequencingPolicy;
+        this.ackTracker = new AckTracker(numProcesses, windowSize, completionLatency);
+        this.windowSize = windowSize;
+        this.nextSequenceNumber = 1;
+    }
+
+    //number the broadcasts after seq, the last one sequenced by this process in an earlier run, every one up to it taken as delivered everywhere
+    //called before the first broadcast, so that the processes restoring the same deliveries expect the next one
+    public void restore(int seq) {
+        this.nextSequenceNumber = seq + 1;
+        this.ackTracker.restore(seq);
+    }
+
+    //queue a request behind the earlier ones of it's sender, returning false if the sender's queue is full
+    //safe to call from any thread, each sender's requests coming from a single one
+    public boolean queue(Message request) {
+        return this.requestQueues[request.senderProcessId].offer(request);
+    }
+
+    //num of requests waiting to be sequenced
+    public int getQueued() {
+        int queued = 0;
+        for (RequestQueue requestQueue : this.requestQueues) {
+            queued += requestQueue.size();
+        }
+        return queued;
+    }
+
+    //check if another broadcast fits in the window
+    public boolean isWindowOpen() {
+        return this.ackTracker.getOutstanding() < this.windowSize;
+    }
+
+    //take up to batch.length requests in the order of the sequencing policy, each sender's own requests in the order it made them,
+    //returning how many were taken: fewer when no request is ready (slots claimed but not yet written), the rest being taken next time
+    public int take(Message[] batch) {
+        int size = 0;
+        int sender;
+        while(size < batch.length && (sender = this.sequencingPolicy.next(this.requestQueues)) >= 0) {
+            batch[size++] = this.requestQueues[sender].poll();
+        }
+        return size;
+    }
+
+    //pack the first size requests of batch into the next broadcast, outstanding until every process acknowledges it
+    //a single request is broadcast as the broadcast itself, naming it's requester as the receiver
+    public Message broadcast(Message[] batch, int size) {
+        Message request = batch[0];
+        Message broadcast = new Message("APPLICATION", this.processId, request.senderProcessId, request.clock, request.mid);
+        broadcast.group = request.group;
+        broadcast.timestamp = request.timestamp;
+        if(size > 1) { broadcast.batch = size < batch.length ? Arrays.copyOf(batch, size) : batch; }
+        broadcast.seq = this.nextSequenceNumber++;  //tag the broadcast with it's position in this sequencer's total order
+        broadcast.stable = this.ackTracker.getCompletedUpTo();  //let every process prune the broadcasts all of them delivered
+        this.ackTracker.sent(broadcast.seq, size);
+        return broadcast;
+    }
+
+    //apply a cumulative acknowledgement of every broadcast up to seq by a process, returning the num of requests of the broadcasts it completed
+    public int acknowledge(int processId, int seq) {
+        return this.ackTracker.acknowledge(processId, seq);
+    }
+
+    //highest sequence number delivered by every process
+    public int getCompletedUpTo() {
+        return this.ackTracker.getCompletedUpTo();
+    }
+
+    //num of broadcasts sent but not yet delivered by every process
+    public int getOutstanding() {
+        return this.ackTracker.getOutstanding();
+    }
+}
@@ -0,0 +1,74 @@
+//order in which a sequencer takes the requests waiting in it's per-sender queues, set with -Dsequencing
+//round-robin: one request of each sender in turn; weighted: up to a weight of requests of each sender in turn (-DsequencingWeights);
+//oldest-first: the request made earliest, by the requests' System.nanoTime() timestamps, so only meaningful when senders share a host
+//keeping a queue per sender means a sender with many requests queued (Eg: the sequencer itself, whose requests skip the network)
+//can't make the requests of the others wait behind all of it's own
+public interface SequencingPolicy {
+
+    //sender whose request is taken next, or -1 if no queue has a request ready (called by the sequencer only)
+    int next(RequestQueue[] queues);
+
+    //policy named by a setting, with the weights of each sender for the weighted one
+    static SequencingPolicy of(String name, int[] weights) {
+        switch (name) {
+            case "round-robin": return new Weighted(new int[weights.length]);
+            case "weighted": return new Weighted(weights);
+            case "oldest-first": return new OldestFirst();
+            default: throw new IllegalArgumentException("no such sequencing policy " + name);
+        }
+    }
+
+    //weights of each of numProcesses senders from a comma separated list, Eg: "4,1,1,1", missing ones being 1
+    static int[] weights(String list, int numProcesses) {
+        int[] weights = new int[numProcesses];
+        String[] values = list == null || list.isEmpty() ? new String[0] : list.split(",");
+        for (int i = 0; i < numProcesses; i++) {
+            weights[i] = i < values.length ? Math.max(1, Integer.parseInt(values[i].trim())) : 1;
+        }
+        return weights;
+    }
+
+    //weighted round-robin, serving up to weights[sender] requests of a sender before moving on to the next one with requests
+    //(a weight of 0 counts as 1, so round-robin is every weight left at 0)
+    class Weighted implements SequencingPolicy {
+        private int[] weights;
+        private int current;    //sender being served
+        private int served; //num of requests of the current sender taken in a row
+
+        Weighted(int[] weights) {
+            this.weights = weights;
+        }
+
+        public int next(RequestQueue[] queues) {
+            if(this.served < Math.max(1, this.weights[this.current]) && queues[this.current].peek() != null) {
+                this.served++;
+                return this.current;
+            }
+            for (int i = 1; i <= queues.length; i++) {
+                int sender = (this.current + i) % queues.length;
+                if(queues[sender].peek() != null) {
+                    this.current = sender;
+                    this.served = 1;
+                    return sender;
+                }
+            }
+            return -1;
+        }
+    }
+
+    //the request with the earliest timestamp at the head of any queue, each sender's requests being queued in the order it made them
+    class OldestFirst implements SequencingPolicy {
+        public int next(RequestQueue[] queues) {
+            int oldest = -1;
+            long oldestTimestamp = 0;
+            for (int sender = 0; sender < queues.length; sender++) {
+                Message request = queues[sender].peek();
+                if(request != null && (oldest < 0 || request.timestamp - oldestTimestamp < 0)) {
+                    oldest = sender;
+                    oldestTimestamp = request.timestamp;
+                }
+            }
+            return oldest;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//run sequencer mode over a NetworkSimulator for growing numbers of processes, in virtual time, and report how sequencer throughput,
+//latency, hold-back and acknowledgement traffic scale, and whether every process delivered the same order
+//usage: java Simulation [--key=value ...]
+//settings: processes (comma separated sizes, 4,16,64,256), messages (per process, 50), rate (requests/s per process, 100),
+//window (16), batch (1), credits (64), ackEvery (1), ackInterval (microseconds, 1000), sequencing (round-robin),
+//latency (base one-way microseconds, 200), jitter (microseconds, 100), distribution (exponential), reorder (false),
+//bandwidth (Mbit/s of each process' link, 1000, 0 for unlimited), seed (1)
+//the simulated processes run the same Sequencer and SequencedReceiver as Process (sequencing policy, window, hold-back, cumulative
+//acknowledgements), with only credits and the acknowledgement timer of their own, driven by simulator events instead of threads and timers
+public class Simulation {
+
+    public static void main(String[] args) {
+        Properties settings = new Properties();
+        for (String arg : args) {
+            if(!arg.startsWith("--")) { throw new IllegalArgumentException("settings are given as --key=value, not " + arg); }
+            int equals = arg.indexOf('=');
+            settings.setProperty(equals < 0 ? arg.substring(2) : arg.substring(2, equals), equals < 0 ? "true" : arg.substring(equals + 1));
+        }
+
+        String[] sizes = settings.getProperty("processes", "4,16,64,256").split(",");
+        System.out.println(String.format("Sequencer mode, %s messages per process at %s requests/s, window %s, batch %s, ackEvery %s, %s us + %s %s jitter, %s Mbit/s links%s, seed %s",
+            settings.getProperty("messages", "50"), settings.getProperty("rate", "100"), settings.getProperty("window", "16"), settings.getProperty("batch", "1"),
+            settings.getProperty("ackEvery", "1"), settings.getProperty("latency", "200"), settings.getProperty("jitter", "100"),
+            settings.getProperty("distribution", "exponential"), settings.getProperty("bandwidth", "1000"),
+            Boolean.parseBoolean(settings.getProperty("reorder", "false")) ? ", reordering" : "", settings.getProperty("seed", "1")));
+        System.out.println("processes  requests  virtual(s)  requests/s  p50(us)  p99(us)  max(us)  maxHeldBack  acks/broadcast  sequencerLink  events  wall(s)  speedup  sameOrder");
+        for (String size : sizes) {
+            System.out.println(new Simulation(Integer.parseInt(size.trim()), settings).run());
+        }
+    }
+
+    private int numProcesses;
+    private int messages;   //num of requests made by each process
+    private int rate;   //requests per second made by each process
+    private int windowSize;
+    private int batchSize;
+    private int credits;
+    private int ackEvery;
+    private long ackIntervalNanos;
+    private String sequencing;
+    private String sequencingWeights;
+    private long seed;
+
+    private NetworkSimulator network;
+    private Node[] nodes;
+    private int sequencer;  //process sequencing every request, like the elected leader
+    private LatencyHistogram latency = new LatencyHistogram(); //request-to-delivery latency at every process, in virtual time
+    private int maximumHeldBack;    //largest num of broadcasts held back by a single process
+    private long broadcasts;    //num of broadcasts made by the sequencer
+    private long acknowledgements;  //num of acknowledgements sent to the sequencer, piggybacked ones excluded
+
+    //constructor
+    public Simulation(int numProcesses, Properties settings) {
+        this.numProcesses = numProcesses;
+        this.messages = Integer.parseInt(settings.getProperty("messages", "50"));
+        this.rate = Math.max(1, Integer.parseInt(settings.getProperty("rate", "100")));
+        this.windowSize = Math.max(1, Integer.parseInt(settings.getProperty("window", "16")));
+        this.batchSize = Math.max(1, Integer.parseInt(settings.getProperty("batch", "1")));
+        this.credits = Math.max(1, Integer.parseInt(settings.getProperty("credits", "64")));
+        this.ackEvery = Math.max(1, Integer.parseInt(settings.getProperty("ackEvery", "1")));
+        this.ackIntervalNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, Integer.parseInt(settings.getProperty("ackInterval", "1000"))));
+        this.sequencing = settings.getProperty("sequencing", "round-robin");
+        this.sequencingWeights = settings.getProperty("sequencingWeights");
+        this.seed = Long.parseLong(settings.getProperty("seed", "1"));
+
+        this.network = new NetworkSimulator(numProcesses, this.seed,
+            TimeUnit.MICROSECONDS.toNanos(Long.parseLong(settings.getProperty("latency", "200"))),
+            TimeUnit.MICROSECONDS.toNanos(Long.parseLong(settings.getProperty("jitter", "100"))),
+            NetworkSimulator.distribution(settings.getProperty("distribution", "exponential")),
+            Boolean.parseBoolean(settings.getProperty("reorder", "false")),
+            Long.parseLong(settings.getProperty("bandwidth", "1000")) * 1000000L);
+        this.sequencer = new Random(this.seed).nextInt(numProcesses);
+    }
+
+    //run every process until all requests are delivered everywhere, returning a line of the results table
+    public String run() {
+        long start = System.nanoTime();
+        int[] clock = new int[this.numProcesses];   //every request carries a clock of numProcesses entries, sized as late in a run
+        Arrays.fill(clock, this.messages);
+        Random random = new Random(this.seed);
+        this.nodes = new Node[this.numProcesses];
+        for (int i = 0; i < this.numProcesses; i++) {
+            this.nodes[i] = new Node(i, this.network.getEndpoint(i), clock);
+        }
+        for (Node node : this.nodes) {
+            //processes start requesting at random offsets within the first interval, instead of in lockstep
+            long offset = (long) (random.nextDouble() * 1000000000L / this.rate);
+            this.network.schedule(offset, () -> node.request(0, this.network.now()));
+        }
+        long virtualNanos = this.network.run();
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+        long requests = (long) this.numProcesses * this.messages;
+        boolean sameOrder = true;
+        for (Node node : this.nodes) {
+            sameOrder &= node.delivered == requests && node.orderHash == this.nodes[0].orderHash;
+        }
+        double virtualSeconds = virtualNanos / 1e9;
+        return String.format("%9d  %8d  %10.3f  %10.0f  %7d  %7d  %7d  %11d  %14.2f  %12.0f%%  %6d  %7.2f  %7.1f  %s",
+            this.numProcesses, requests, virtualSeconds, requests / virtualSeconds,
+            micros(this.latency.getValueAtQuantile(0.50)), micros(this.latency.getValueAtQuantile(0.99)), micros(this.latency.getMaximum()),
+            this.maximumHeldBack, (double) this.acknowledgements / Math.max(1, this.broadcasts),
+            100 * this.network.getLinkUtilization(this.sequencer), this.network.getEventsRun(), wallSeconds, virtualSeconds / wallSeconds, sameOrder);
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    //a process of the simulation, handling one message or timer at a time on the simulator's event loop
+    private class Node {
+        int processId;
+        Transport transport;
+        int[] clock;    //clock carried by this process' requests, for their encoded size
+
+        //client
+        int requested;  //num of requests made
+        int availableCredits;   //requests that may still be sent to the sequencer before one is delivered
+        ArrayDeque<Message> waiting = new ArrayDeque<Message>();    //requests made while out of credits, in order
+        boolean sending;    //sendWaiting is running, so a credit given back meanwhile is used by it's loop instead of a nested call
+
+        //receiver
+        DeliveryEngine deliveryEngine;
+        SequencedReceiver receiver;
+        boolean flushScheduled; //an acknowledgement flush is pending
+        long delivered; //num of requests delivered
+        long orderHash = 1; //hash of the delivery order, equal at every process delivering the same order
+
+        //sequencer
+        Sequencer ordering; //only at the sequencer process
+        boolean sequencingRequests; //sequence is running, so requests queued meanwhile are taken by it's loop instead of a nested call
+
+        Node(int processId, Transport transport, int[] clock) {
+            this.processId = processId;
+            this.transport = transport;
+            this.clock = clock;
+            this.availableCredits = credits;
+            this.deliveryEngine = new DeliveryEngine(numProcesses, 64);
+            this.receiver = new SequencedReceiver(this.deliveryEngine, numProcesses, ackEvery);
+            if(processId == sequencer) {
+                this.ordering = new Sequencer(processId, numProcesses, credits, windowSize,
+                    SequencingPolicy.of(sequencing, SequencingPolicy.weights(sequencingWeights, numProcesses)), null);
+            }
+            try {
+                transport.start(message -> {
+                    this.handle(message);
+                    return true;    //simulated processes handle every message as it arrives
+                }, () -> {});
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e); //simulated endpoints don't bind anything
+            }
+        }
+
+        //make the i-th request, due at the given virtual time, and schedule the next one (open-loop load)
+        void request(int i, long due) {
+            Message request = new Message("REQ_MASTER", this.processId, sequencer, this.clock, (i + 1) * numProcesses + this.processId);
+            request.group = i % 16;
+            request.timestamp = due;
+            this.requested++;
+            this.waiting.add(request);
+            this.sendWaiting();
+
+            if(this.requested < messages) {
+                long next = due + 1000000000L / rate;
+                network.schedule(next - network.now(), () -> this.request(i + 1, next));
+            }
+        }
+
+        //send the waiting requests this process holds credits for
+        void sendWaiting() {
+            if(this.sending) { return; }
+            this.sending = true;
+            while(this.availableCredits > 0 && !this.waiting.isEmpty()) {
+                Message request = this.waiting.poll();
+                this.availableCredits--;
+                if(this.processId == sequencer) {
+                    this.ordering.queue(request);
+                    this.sequence();
+                    continue;
+                }
+                request.seq = this.takeAcknowledgement();   //requests piggyback the cumulative acknowledgement
+                this.transport.send(request, sequencer);
+            }
+            this.sending = false;
+        }
+
+        void handle(Message message) {
+            switch (message.type) {
+                case "REQ_MASTER":
+                    this.ordering.queue(message);
+                    if(message.seq > 0) { this.acknowledge(message.senderProcessId, message.seq); }
+                    this.sequence();
+                    break;
+                case "APPLICATION":
+                    this.receive(message);
+                    break;
+                case "APPLICATION_ACK":
+                    this.acknowledge(message.senderProcessId, message.seq);
+                    break;
+                default:
+                    throw new IllegalArgumentException("no such simulated message type " + message.type);
+            }
+        }
+
+        //sequencer: broadcast queued requests while the window has room
+        void sequence() {
+            if(this.sequencingRequests) { return; }
+            this.sequencingRequests = true;
+            int queued;
+            while(this.ordering.isWindowOpen() && (queued = this.ordering.getQueued()) > 0) {
+                Message[] batch = new Message[Math.min(batchSize, queued)];
+                int size = this.ordering.take(batch);
+                Message broadcast = this.ordering.broadcast(batch, size);
+                this.transport.broadcast(broadcast);
+                broadcasts++;
+
+                for (int i = 0; i < size; i++) {
+                    this.deliver(batch[i], batch[i].senderProcessId);
+                }
+            }
+            this.sequencingRequests = false;
+        }
+
+        void acknowledge(int processId, int seq) {
+            if(this.ordering.acknowledge(processId, seq) > 0) { this.sequence(); }
+        }
+
+        //receiver: deliver the broadcasts in sequence order, holding back the ones arriving early
+        void receive(Message broadcast) {
+            if(this.receiver.offer(broadcast) == DeliveryEngine.HELD_BACK) {
+                maximumHeldBack = Math.max(maximumHeldBack, this.deliveryEngine.getHeldBack());
+                return;
+            }
+
+            Message deliverable;
+            while((deliverable = this.receiver.poll(sequencer)) != null) {
+                for (Message entry : deliverable.getEntries()) {
+                    this.deliver(entry, SequencedReceiver.requesterOf(deliverable, entry));
+                }
+            }
+
+            if(this.receiver.isAcknowledgementDue(sequencer)) {
+                this.sendAcknowledgement();
+            }
+            else if(this.receiver.isUnacknowledged(sequencer) && !this.flushScheduled) {
+                this.flushScheduled = true;
+                network.schedule(ackIntervalNanos, this::flushAcknowledgement);
+            }
+        }
+
+        void deliver(Message entry, int requester) {
+            this.delivered++;
+            this.orderHash = this.orderHash * 31 + entry.mid;
+            latency.record(network.now() - entry.timestamp);
+            if(requester == this.processId) {
+                this.availableCredits++;
+                this.sendWaiting();
+            }
+        }
+
+        void sendAcknowledgement() {
+            Message acknowledgement = new Message("APPLICATION_ACK", this.processId, sequencer, null, 0);
+            acknowledgement.seq = this.takeAcknowledgement();
+            this.transport.send(acknowledgement, sequencer);
+            acknowledgements++;
+        }
+
+        void flushAcknowledgement() {
+            this.flushScheduled = false;
+            if(this.receiver.isUnacknowledged(sequencer)) { this.sendAcknowledgement(); }
+        }
+
+        int takeAcknowledgement() {
+            return this.receiver.takeAcknowledgement(sequencer);
+        }
+    }
+}
@@ -1,6 +1,8 @@
+import java.io.File;
 import java.io.IOException;
 import java.lang.InterruptedException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 //Class to start the Process
@@ -14,12 +16,20 @@ public class Start {
 
     public static int processId;    //Id of process running on this machine
 
+    //usage: java Start <processId> [numProcesses basePort host]
+    //with host given, all processes run on that host from basePort on (Eg: 127.0.0.1, as forked by the Launcher)
     public static void main(String[] args) throws IOException, InterruptedException{
 
         //initialize variables
         if(args.length > 0) {
             processId = Integer.parseInt(args[0]);
-            System.out.println("Process " + processId + " activated!");
+            Log.info("Process " + processId + " activated!");
+        }
+        if(args.length > 3) {
+            NUM_PROCESSES = Integer.parseInt(args[1]);
+            BASE_PORT = Integer.parseInt(args[2]);
+            processIPList = new String[NUM_PROCESSES];
+            Arrays.fill(processIPList, args[3]);
         }
 
         for (int i = 0; i < NUM_PROCESSES; i++) {
@@ -32,14 +42,17 @@ public class Start {
         //Establish connections with processes on the connectingProcessList
         process.establishConnections();
 
-        //ping at regular intervals to check client & server completion status
-        while (true) {
-            Thread.sleep(1000);
-            if(process.getClientTerminated() && process.getServerTerminated()) {
-                break;
-            }
+        //directory to write this process' delivery report to once all messages are delivered (Eg: by the Launcher)
+        //the process keeps running after that, since others may still wait for it's broadcasts and acknowledgements
+        String resultsDir = System.getProperty("resultsDir");
+        if(resultsDir != null && process.awaitDelivery(Long.MAX_VALUE)) {
+            NodeReport.of(processId, process).writeTo(NodeReport.fileOf(new File(resultsDir), processId));
         }
 
-        return;
+        //wait for the client & server to signal their termination
+        process.awaitTermination();
+
+        //a process stopped on a broken invariant exits with status 1, since it's other threads never finish on their own
+        if(process.getFailure() != null) { System.exit(1); }
     }
 }
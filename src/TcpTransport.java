@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Predicate;
+
+//transport over a long-lived outbound connection to every other process, and a non-blocking server receiving from all of them
+//each message is encoded once into a pooled frame shared by every outbound queue it is sent on,
+//except with differential clocks, where each process gets the clock entries that changed on it's own connection
+public class TcpTransport implements Transport {
+
+    private int processId;  //ID of the process sending and receiving
+    private ConnectingProcess address;  //IP address and port the process receives on
+    private VectorClock vectorClock;    //clock of the process, holding the state of each connection's differential clocks
+    private int selectorThreads;    //num of selector loops receiving from all other processes
+    private int receiveBufferSize;  //size of each pooled receive buffer
+
+    private PeerConnection[] peerConnections;   //long-lived outbound connection to each other process
+    private Object[] clockLocks;    //guards the differential clock state of each connection, so frames are queued in the order they were diffed
+    private InboundServer inboundServer;    //receives messages from all other processes
+    private BufferPool framePool;   //direct buffers outbound frames are encoded into, shared by the outbound queues they are sent on
+
+    //constructor, opening the outbound queues to every other process (connections are made on their first frames)
+    public TcpTransport(int processId, List<ConnectingProcess> connectingProcessList, VectorClock vectorClock, ProcessConfig config) {
+        this.processId = processId;
+        this.address = connectingProcessList.get(processId);
+        this.vectorClock = vectorClock;
+        this.selectorThreads = config.selectorThreads;
+        this.receiveBufferSize = config.receiveBufferSize;
+        this.framePool = new BufferPool(config.frameBufferSize);
+
+        this.peerConnections = new PeerConnection[connectingProcessList.size()];
+        this.clockLocks = new Object[this.peerConnections.length];
+        for (int i = 0; i < this.peerConnections.length; i++) {
+            if(i == processId) { continue; }
+            this.clockLocks[i] = new Object();
+            this.peerConnections[i] = new PeerConnection(connectingProcessList.get(i).IP, connectingProcessList.get(i).port, config.queueBound);
+            this.peerConnections[i].start("sender-" + processId + "-to-" + i);
+        }
+    }
+
+    //bind the receiving port, every process receiving from all others on it's own port
+    public void start(Predicate<Message> handler, Runnable onClose) throws IOException {
+        int[][] lastReceivedClocks = this.vectorClock.isDifferentialTransmission() ? this.vectorClock.getLastReceivedClocks() : null;
+        this.inboundServer = new InboundServer(this.address.port, this.selectorThreads, this.receiveBufferSize, lastReceivedClocks, handler, onClose);
+        this.inboundServer.start();
+        Log.info("server for process " + this.processId + " listening on port " + this.address.port);
+    }
+
+    //read again from the connections paused on a message the handler had no room for
+    public void resumeReceiving() {
+        if(this.inboundServer != null) { this.inboundServer.resume(); }
+    }
+
+    //queue the same encoded frame for every process, encoded once into a pooled buffer that every outbound queue writes from
+    //and that goes back to the pool once the last process' frames are written
+    //differential clocks differ per process, so the message is then encoded for each one
+    public void broadcast(Message message) {
+        if(this.vectorClock.isDifferentialTransmission()) {
+            for (int i = 0; i < this.peerConnections.length; i++) {
+                if(i == this.processId) { continue; }    //not send to self
+
+                this.send(message, i);
+            }
+            return;
+        }
+
+        Frame frame = Frame.encode(message, this.framePool, null);
+        for (int i = 0; i < this.peerConnections.length; i++) {
+            if(i == this.processId) { continue; }    //not send to self
+
+            this.enqueueFrame(frame, message, i);
+        }
+        frame.release();
+    }
+
+    //send a given message to the particular receiverProcessId, over it's long-lived connection
+    public void send(Message message, int receiverProcessId) {
+        if(!this.vectorClock.isDifferentialTransmission()) {
+            Frame frame = Frame.encode(message, this.framePool, null);
+            this.enqueueFrame(frame, message, receiverProcessId);
+            frame.release();
+            return;
+        }
+
+        //frames must be queued in the order their clocks were diffed against the channel state
+        //under a lock of it's own, not the connection's, which it's sender thread holds while backing off to reconnect
+        synchronized(this.clockLocks[receiverProcessId]) {
+            Frame frame = Frame.encode(message, this.framePool, this.vectorClock.getLastSentClock(receiverProcessId));
+            this.enqueueFrame(frame, message, receiverProcessId);
+            frame.release();
+        }
+    }
+
+    //queue an encoded frame on the outbound queue of receiverProcessId, kept in FIFO order (the queue takes it's own reference)
+    private void enqueueFrame(Frame frame, Message message, int receiverProcessId) {
+        try {
+            this.peerConnections[receiverProcessId].enqueue(frame);
+        }
+        catch (InterruptedException e) {
+            Log.error("couldn't send " + message.type + " to process " + receiverProcessId);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //stop receiving and sending, closing every connection
+    public void close() {
+        if(this.inboundServer != null) { this.inboundServer.close(); }
+        for (PeerConnection peerConnection : this.peerConnections) {
+            if(peerConnection != null) { peerConnection.stop(); }
+        }
+    }
+
+    PeerConnection[] getPeerConnections() {
+        return this.peerConnections;
+    }
+
+    InboundServer getInboundServer() {
+        return this.inboundServer;
+    }
+
+    //fraction of sent frames that reused an already open connection
+    public double getConnectionReuseRate() {
+        long opened = 0;
+        long sent = 0;
+        for (PeerConnection peerConnection : this.peerConnections) {
+            if(peerConnection == null) { continue; }
+            opened += peerConnection.getConnectionsOpened();
+            sent += peerConnection.getFramesSent();
+        }
+        return sent == 0 ? 0 : 1.0 - ((double) opened / sent);
+    }
+
+    //current and maximum outbound queue depth of each other process
+    public String getQueueDepthReport() {
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < this.peerConnections.length; i++) {
+            if(this.peerConnections[i] == null) { continue; }
+            report.append(" process ").append(i).append("=").append(this.peerConnections[i].getQueueDepth()).append("/").append(this.peerConnections[i].getMaximumQueueDepth());
+        }
+        return report.toString().trim();
+    }
+}
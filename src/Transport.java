@@ -0,0 +1,26 @@
+import java.io.IOException;
+import java.util.function.Predicate;
+
+//how a process exchanges messages with the others: TcpTransport over long-lived connections between processes,
+//or an endpoint of a NetworkSimulator, delivering them after simulated latencies in virtual time
+//messages to the same process are delivered in the order they were sent, unless the transport is set up to reorder them
+//a transport may keep a sent message (and it's clock and batch) instead of encoding it before send returns, so senders must not modify it afterwards
+public interface Transport {
+
+    //start receiving, handing every message received to handler, and calling onClose once the transport stopped receiving
+    //handler returns false when the receiver has no room for a message yet: the transport then stops receiving from it's sender,
+    //and hands it the same message again after resumeReceiving, so the messages of a sender are still handled in the order they were sent
+    void start(Predicate<Message> handler, Runnable onClose) throws IOException;
+
+    //send a message to a single process
+    void send(Message message, int receiverProcessId);
+
+    //send a message to every other process
+    void broadcast(Message message);
+
+    //hand the messages the handler had no room for to it again, and receive from their senders again, the receiver having made room
+    void resumeReceiving();
+
+    //stop receiving and sending
+    void close();
+}
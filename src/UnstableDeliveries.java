@@ -0,0 +1,33 @@
+//count of delivered broadcasts not yet stable, that is not yet known to be delivered by every process
+//nothing reads a delivered message again, so only the watermarks of each stream (the sequencer, or the sender in causal mode) are kept:
+//the highest sequence number delivered and the one every process delivered up to, broadcasts of a stream being delivered in sequence order
+public class UnstableDeliveries {
+
+    private int[] deliveredUpTo;    //highest sequence number delivered of each stream
+    private int[] stableUpTo;   //sequence number each stream is stable up to
+
+    //constructor
+    public UnstableDeliveries(int numStreams) {
+        this.deliveredUpTo = new int[numStreams];
+        this.stableUpTo = new int[numStreams];
+    }
+
+    //count a delivered broadcast with the sequence number it has in it's stream, entries of a batch sharing one
+    public void add(int stream, int seq) {
+        if(seq > this.deliveredUpTo[stream]) { this.deliveredUpTo[stream] = seq; }
+    }
+
+    //mark the broadcasts of a stream up to stableUpTo as stable
+    public void prune(int stream, long stableUpTo) {
+        if(stableUpTo > this.stableUpTo[stream]) { this.stableUpTo[stream] = (int) stableUpTo; }
+    }
+
+    //num of delivered broadcasts not yet stable in all streams
+    public int size() {
+        int unstable = 0;
+        for (int stream = 0; stream < this.deliveredUpTo.length; stream++) {
+            unstable += Math.max(0, this.deliveredUpTo[stream] - this.stableUpTo[stream]);
+        }
+        return unstable;
+    }
+}
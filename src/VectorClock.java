@@ -1,77 +1,150 @@
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 //Class to store the TimeStamps using VectorClocks
+//entries are updated lock-free, and copies and merges work on caller-supplied arrays instead of allocating
 public class VectorClock {
- 
+
+    //outcome of comparing two timestamps a and b, as bit flags: 1 = some entry of a is smaller, 2 = some entry of a is larger
+    public static final int EQUAL = 0;
+    public static final int BEFORE = 1;    //a happened before b
+    public static final int AFTER = 2;     //b happened before a
+    public static final int CONCURRENT = 3;
+
     int processId;  //holds the timestamp of this process
     int clockIncrement; //value of increment on each local event
-    int clock[]; //array of timestamps of each process
-    private final ReadWriteLock timeStampLock = new ReentrantReadWriteLock();   //lock to keep timestamp consistent
+    private final AtomicIntegerArray clock; //array of timestamps of each process
+
+    //differential transmission state: the last timestamp sent to, and received from, each process (null when disabled)
+    private int[][] lastSentClocks;
+    private int[][] lastReceivedClocks;
 
     //constructor
     public VectorClock(int size, int processId) {
         this.clockIncrement = 1;    //default increment value
-        this.clock = new int[size]; //size=NUM_PROCESSES
+        this.clock = new AtomicIntegerArray(size); //size=NUM_PROCESSES
         this.processId = processId;
     }
 
+    //keep the last timestamp sent to and received from each process, so that messages only carry the entries that changed
+    public void enableDifferentialTransmission() {
+        int size = this.clock.length();
+        this.lastSentClocks = new int[size][size];
+        this.lastReceivedClocks = new int[size][size];
+    }
+
+    public boolean isDifferentialTransmission() {
+        return this.lastSentClocks != null;
+    }
+
+    //last timestamp sent to a process, updated by MessageCodec.encode as messages are encoded for it
+    public int[] getLastSentClock(int processId) {
+        return this.lastSentClocks[processId];
+    }
+
+    //last timestamp received from each process, indexed by sender and updated by MessageCodec.decode
+    public int[][] getLastReceivedClocks() {
+        return this.lastReceivedClocks;
+    }
+
+    public int size() {
+        return this.clock.length();
+    }
+
+    //timestamp of a single process
+    public int get(int processId) {
+        return this.clock.get(processId);
+    }
+
+    //give a new copy of the timestamps, for messages that keep their own timestamp
     public int[] getVectorClock() {
-        this.timeStampLock.readLock().lock();
-        try {
-            // give a cloned copy for immutability
-            return this.clock.clone();
-        }
-        finally {
-            this.timeStampLock.readLock().unlock();
+        return this.copyVectorClock(new int[this.clock.length()]);
+    }
+
+    //copy the timestamps into the given array, and return it
+    public int[] copyVectorClock(int[] into) {
+        for (int i = 0; i < into.length; i++) {
+            into[i] = this.clock.get(i);
         }
+        return into;
     }
 
     //update timestamp of a local event
-    public synchronized void updateLocalClock(int processId) {
-        this.timeStampLock.writeLock().lock();
-        try {
-            //update only the process' time
-            this.clock[processId] += this.clockIncrement;
-
-        } finally {
-            this.timeStampLock.writeLock().unlock();
-        }
+    public void updateLocalClock(int processId) {
+        //update only the process' time
+        this.clock.addAndGet(processId, this.clockIncrement);
     }
 
-    //update timestamp when delivering a message
-    public synchronized void updateClock(Message message) {
-        this.timeStampLock.writeLock().lock();
-        try {
-            //component-wise maximum of each process' timestamp
-            for (int i = 0; i < this.clock.length; i++) {
-                //update local timestamp of process
-                int localTimeStamp = i == processId ? (this.clock[i]+this.clockIncrement) : this.clock[i];
-                int messageTimeStamp = message.clock[i];
-
-                this.clock[i] = Math.max(localTimeStamp, messageTimeStamp);
-            }
+    //update timestamp of a local event, and copy the new timestamps into the given array
+    public int[] tick(int[] into) {
+        this.updateLocalClock(this.processId);
+        return this.copyVectorClock(into);
+    }
 
+    //update timestamp when delivering a message
+    public void updateClock(Message message) {
+        //component-wise maximum of each process' timestamp, counting the delivery as a local event
+        this.mergeClock(message.clock);
+        int local;
+        while(true) {
+            local = this.clock.get(this.processId);
+            int updated = Math.max(local + this.clockIncrement, message.clock[this.processId]);
+            if(this.clock.compareAndSet(this.processId, local, updated)) { return; }
         }
-        catch(Exception e) {
-            e.printStackTrace();
+    }
+
+    //update timestamp when causally delivering a broadcast, without counting a local event
+    public void mergeClock(int[] messageClock) {
+        //component-wise maximum of each process' timestamp
+        for (int i = 0; i < messageClock.length; i++) {
+            int current;
+            while((current = this.clock.get(i)) < messageClock[i] && !this.clock.compareAndSet(i, current, messageClock[i])) {
+                //another writer moved the entry, retry against it's new value
+            }
         }
-        finally {
-            this.timeStampLock.writeLock().unlock();
+    }
+
+    //merge a timestamp into the given array, component-wise maximum written in place
+    public static void merge(int[] into, int[] other) {
+        for (int i = 0; i < into.length; i++) {
+            into[i] = Math.max(into[i], other[i]);
         }
-        return;
     }
 
-    //helper function to put read-write locks on timestamp
-    public synchronized void lockUnlockTime(String type, String method) {
-        if(type == "read") {
-            if(method == "lock") { this.timeStampLock.readLock().lock(); }
-            else if(method == "unlock") { this.timeStampLock.readLock().unlock(); }
+    //check if a message broadcast by sender can be causally delivered: it is the next message from sender,
+    //and every message it depends on from the other processes is already delivered
+    public boolean isCausallyReady(int[] messageClock, int sender) {
+        int waiting = messageClock[sender] - (this.clock.get(sender) + 1);
+        for (int i = 0; i < messageClock.length; i++) {
+            if(i == sender) { continue; }
+            waiting |= (this.clock.get(i) - messageClock[i]) >>> 31;   //1 when the message depends on an undelivered message of i
         }
-        else if(type == "write") {
-            if(method == "lock") { this.timeStampLock.writeLock().lock(); }
-            else if(method == "unlock") { this.timeStampLock.writeLock().unlock(); }
+        return waiting == 0;
+    }
+
+    //compare timestamps a and b entry by entry, without branching on the entries
+    public static int compare(int[] a, int[] b) {
+        int smaller = 0;
+        int larger = 0;
+        for (int i = 0; i < a.length; i++) {
+            smaller |= (a[i] - b[i]) >>> 31;
+            larger |= (b[i] - a[i]) >>> 31;
         }
+        return smaller | (larger << 1);
+    }
+
+    //check if a happened before b: no entry of a is larger, and at least one is smaller
+    public static boolean happenedBefore(int[] a, int[] b) {
+        return compare(a, b) == BEFORE;
+    }
+
+    //check if neither of a and b happened before the other
+    public static boolean concurrent(int[] a, int[] b) {
+        return compare(a, b) == CONCURRENT;
+    }
+
+    //check if a is at least as recent as b in every entry
+    public static boolean dominates(int[] a, int[] b) {
+        return (compare(a, b) & BEFORE) == 0;
     }
 
 }